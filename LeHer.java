@@ -1,21 +1,22 @@
+import java.math.*;
 import java.util.ArrayList;
 
 /*
  * Aakash Dutt and Agustin Jauregui
- * LeHer: Creates a probability matrix winProbability[][] for the chance of P1 winning the game given a maxValP1 and maxValP2
+ * LeHer: Creates a probability matrix winProbability for the chance of P1 winning the game given a maxValP1 and maxValP2
  */
 
 public class LeHer {
 
 	private int cards;
 	private int cardSets;
-	private Fraction[][] winProbability;
+	private LeHer_Matrix winProbability;
 	
 	public LeHer(int cardSets, int cards) {
 
 		this.cardSets = cardSets;
 		this.cards = cards;
-		winProbability = new Fraction[cards+1][cards+1];
+		winProbability = new LeHer_Matrix(cards+1, bigDenominator());
 		solveMatrix();
 
 	}
@@ -23,56 +24,58 @@ public class LeHer {
 	// Finds P1's win probability of each possible value of maxValP1 and maxValP2 [0, cards]
 	public void solveMatrix() {
 
+		LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.MATRIX, "LeHer", cards+1);
+
 		for(int row = 0; row<=cards; row++)
 			for(int col = 0; col<=cards; col++)
 				solveProbability(row, col);
 
+		timer.matrix((long)(cards+1)*(cards+1), 0L);
+
 	}
 
 	// Finds the probability of P1 winning given the max value that P1 will keep and the max value that P2 will keep
 	public void solveProbability(int maxValP1, int maxValP2) {
 
 		// Separates out numerator and denominator for more accurate calculation at the end
-		final int numCards = cardSets*cards;
-		int numerator = 0;
-		int denominator = numCards * (numCards-1) * (numCards-2);
+		final long sets = cardSets;
+		final long numCards = sets*cards;
+		Sum numerator = new Sum();
 
 		// Case 1
 		for(int P1Card = 1; P1Card<=maxValP1; P1Card++)
 			for(int P2Card=1; P2Card<=cards; P2Card++) 
 				if(P1Card<P2Card && P2Card<cards)
-					numerator += cardSets*cardSets*((cardSets*(P2Card-1))-1+cardSets);
+					numerator.add(sets*sets, (sets*(P2Card-1))-1+sets);
 
 		// Case 2
 		for(int P1Card = maxValP1+1; P1Card<=cards; P1Card++) {
 			for(int P2Card=1; P2Card<=maxValP2; P2Card++) {
 
-				int prob = cardSets;
+				long prob = sets;
 
 				if(P1Card==P2Card)
-					prob*=cardSets-1;
+					prob*=sets-1;
 
 				else
-					prob*=cardSets;
+					prob*=sets;
 
 				if(P1Card>P2Card) {
 
 					if(P1Card==cards)
-						prob *= cardSets*(P1Card-1) + (cardSets-2);
+						numerator.add(prob, sets*(P1Card-1) + (sets-2));
 
 					else
-						prob *= cardSets*(P1Card-1) + (cardSets-1);
+						numerator.add(prob, sets*(P1Card-1) + (sets-1));
 
 				}
 
 				else {
 
-					prob *= cardSets*(P1Card-1);
+					numerator.add(prob, sets*(P1Card-1));
 
 				}
 
-				numerator += prob;
-
 			}
 
 		}	
@@ -81,189 +84,207 @@ public class LeHer {
 		for(int P1Card = maxValP1+1; P1Card<=cards; P1Card++)
 			for(int P2Card = maxValP2+1; P2Card<=cards; P2Card++)
 				if(P1Card>P2Card)
-					numerator += cardSets*cardSets*(numCards-2);
+					numerator.add(sets*sets, numCards-2);
 
-		winProbability[maxValP1][maxValP2] = new Fraction(numerator, denominator);
+		if(numerator.bigTotal==null)
+			winProbability.set(maxValP1, maxValP2, numerator.total);
+
+		else
+			winProbability.set(maxValP1, maxValP2, numerator.bigTotal);
 
 	}
 
-	// Prints matrix in an easy to read manner
-	public String toString() {
+	// Returns P1's exact win probability for a given max value P1 and P2 will keep
+	public Fraction probability(int maxValP1, int maxValP2) {
 
-		String toReturn = "\t";
+		return new Fraction(winProbability.bigNumerator(maxValP1, maxValP2), winProbability.bigDenominator());
 
-		for(int i = 0; i<=cards; i++)
-			toReturn += "\t" + i;
+	}
 
-		toReturn += "\tMax Value P2 Will Keep";
-		toReturn += "\n";
+	// Shared denominator of every cell: numCards * (numCards-1) * (numCards-2)
+	private BigInteger bigDenominator() {
 
-		for(int i = 0; i<cards+2; i++)
-			toReturn += "--------";
+		final BigInteger numCards = BigInteger.valueOf((long)cardSets*cards);
+		return numCards.multiply(numCards.subtract(BigInteger.ONE)).multiply(numCards.subtract(BigInteger.TWO));
 
-		toReturn += "\n";
+	}
 
-		for(int row = 0; row<=cards; row++) {
+	// Prints matrix in an easy to read manner
+	public String toString() {
 
-			toReturn += (row) + "\t|";
+		// Use winProbability.toDecimal(row, col) for the cells to see decimal values
+		int[] all = LeHer_Export.indices(cards+1);
+		return LeHer_Export.toString(LeHer_Export.Format.READABLE, cells(), all, all, cards+2);
 
-			for(int col = 0; col<=cards; col++)
-				toReturn += "\t" + winProbability[row][col].multiple(); 
-			// Use winProbability[row][col].toDecimal() to see decimal values
+	}
 
-			toReturn += "\n";
+	// Appends the value printed for a cell, as toString() prints it
+	LeHer_Export.Cells cells() {
 
-		}
+		return winProbability;
+
+	}
 
-		return toReturn + "Max Value P1 Will Keep\n";
+	// Returns the zero-sum equilibrium (game value and optimal mixes) of the matrix left after removing dominated strategies
+	public LeHer_Equilibrium equilibrium() {
+
+		ArrayList<ArrayList<Integer>> solution = strictlyDominantStrategy();
+		return LeHer_Equilibrium.solve(winProbability, solution.get(0), solution.get(1));
 
 	}
 
 	// Returns strictly dominant strategies for both players (P1 strategies in ArrayList.get(0), P2 in ArrayList.get(1))
 	public ArrayList<ArrayList<Integer>> strictlyDominantStrategy() {
 
-		ArrayList<Integer> dominantRowsP1 = new ArrayList<Integer>();
-		ArrayList<Integer> dominantRowsP2 = new ArrayList<Integer>();
+		return new LeHer_Dominance(winProbability).toLists();
 
-		for(int i = 0; i<=cards; i++) {
+	}
 
-			dominantRowsP1.add(i);
-			dominantRowsP2.add(i);
+	// Running sum of products of two longs, kept in a long until it overflows and in a BigInteger from then on
+	private static final class Sum {
 
-		}
+		private long total;
+		private BigInteger bigTotal; // null while total holds the sum
 
-		return strictlyDominantStrategyHelper(dominantRowsP1, dominantRowsP2);
+		private void add(long a, long b) {
 
-	}
-	
-	// Recursive method that keeps narrowing down dominant strategies for each playeruntil they can't be narrowed down.
-	private ArrayList<ArrayList<Integer>> strictlyDominantStrategyHelper(ArrayList<Integer> dominantRowsP1, ArrayList<Integer> dominantColsP2) {
-		
-		ArrayList<Integer> newDomRowsP1 = new ArrayList<Integer>();
-		
-		for(int curRow: dominantRowsP1)
-			if(!checkRows(curRow, dominantRowsP1, dominantColsP2))
-				newDomRowsP1.add(curRow);
-
-		
-		dominantRowsP1 = newDomRowsP1;
-		ArrayList<Integer> newDomColsP2 = new ArrayList<Integer>();	
-		
-		for(int curCol: dominantColsP2)
-			if(!checkCols(curCol, dominantRowsP1, dominantColsP2))
-				newDomColsP2.add(curCol);
-		
-		/*
-		* If dominantColsP2's size doesn't change, nothing has been narrowed down and nothing will change.
-		* This check isn't done for dominantRowsP1 because when the method is initially called it's possible
-		* that nothing will be narrowed down for dominantRowsP1, but something will be narrowed down for
-		* dominantColsP2.
-		*/
-		
-		if(newDomColsP2.size() == dominantColsP2.size()) {
-			
-			ArrayList<ArrayList<Integer>> toReturn = new ArrayList<ArrayList<Integer>>();
-			toReturn.add(new ArrayList<Integer>());
-			toReturn.add(new ArrayList<Integer>());
-			toReturn.get(0).addAll(dominantRowsP1);
-			toReturn.get(1).addAll(newDomColsP2);
-			return toReturn;
-			
-		}
-		
-		return strictlyDominantStrategyHelper(dominantRowsP1, newDomColsP2);
+			if(bigTotal==null) {
 
-	}
-	
-	// Checks a row for strict dominance by any other row
-	private boolean checkRows(int curRow, ArrayList<Integer> dominantRowsP1, ArrayList<Integer> dominantColsP2) {
-		
-		for(int comparingRow: dominantRowsP1)
-			if(rowDominated(curRow, comparingRow, dominantColsP2))
-				return true;
-		
-		return false;
-	
-	}
-	
-	// Checks a col for strict dominance by any other row
-	private boolean checkCols(int curCol, ArrayList<Integer> dominantRowsP1, ArrayList<Integer> dominantColsP2) {
-		
-		for(int comparingCol: dominantColsP2)
-			if(colDominated(curCol, comparingCol, dominantRowsP1))
-				return true;
-		
-		return false;
-		
-	}
-	
-	// Returns true if the row is strictly dominated by another given row
-	private boolean rowDominated(int curRow, int comparingRow, ArrayList<Integer> dominantColsP2) {
-		
-		boolean containsLesserValue = false;
-		
-		for(int col: dominantColsP2) {
-			
-			if(winProbability[curRow][col].multiple()>winProbability[comparingRow][col].multiple())
-				return false;
-			
-			// Accounts for if all numbers are equal but curRow contains one number that is less, making it strictly dominated
-			else if(winProbability[curRow][col].multiple()!=winProbability[comparingRow][col].multiple())
-				containsLesserValue = true;
-				
-		}
-		
-		return containsLesserValue;
-		
-	}
+				try {
+
+					total = Math.addExact(total, Math.multiplyExact(a, b));
+					return;
+
+				} catch(ArithmeticException e) {
+
+					bigTotal = BigInteger.valueOf(total);
+
+				}
+
+			}
+
+			bigTotal = bigTotal.add(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)));
 
-	// Returns true if the col is strictly dominated by another given col
-	private boolean colDominated(int curCol, int comparingCol, ArrayList<Integer> dominantRowsP1) {
-		
-		boolean containsGreaterValue = false;
-		
-		for(int row: dominantRowsP1) {
-			
-			if(winProbability[row][curCol].multiple()<winProbability[row][comparingCol].multiple())
-				return false;
-			
-			// Accounts for if all numbers are equal but curCol contains one number that is greater, making it strictly dominated
-			else if(winProbability[row][curCol].multiple()!=winProbability[row][comparingCol].multiple())
-				containsGreaterValue = true;
-			
 		}
-		
-		return containsGreaterValue;
-		
+
 	}
 
 	class Fraction {
 
-		private int num;
-		private int den;
+		private long num;
+		private long den;
+		private BigInteger bigNum; // Only set, along with bigDen, when the fraction doesn't fit in longs
+		private BigInteger bigDen;
 
-		public Fraction(int numerator, int denominator) {
+		public Fraction(long numerator, long denominator) {
 
 			num = numerator;
 			den = denominator;
 
 		}
 
+		public Fraction(BigInteger numerator, BigInteger denominator) {
+
+			if(numerator.bitLength()<Long.SIZE && denominator.bitLength()<Long.SIZE) {
+
+				num = numerator.longValue();
+				den = denominator.longValue();
+
+			}
+
+			else {
+
+				bigNum = numerator;
+				bigDen = denominator;
+
+			}
+
+		}
+
+		private BigInteger toBigNum() {
+
+			return bigNum!=null ? bigNum : BigInteger.valueOf(num);
+
+		}
+
+		private BigInteger toBigDen() {
+
+			return bigDen!=null ? bigDen : BigInteger.valueOf(den);
+
+		}
+
 		// Returns the fraction in decimal/double form.
 		public double toDecimal() {
 
+			if(bigNum!=null)
+				return new BigDecimal(bigNum).divide(new BigDecimal(bigDen), MathContext.DECIMAL64).doubleValue();
+
 			return ((double)num)/den;
 
 		}
 
+		// Exact comparison; fractions with the same denominator (every cell of the matrix) only compare numerators
+		public int compareTo(Fraction other) {
+
+			if(bigNum==null && other.bigNum==null) {
+
+				if(den==other.den)
+					return Long.compare(num, other.num);
+
+				try {
+
+					return Long.compare(Math.multiplyExact(num, other.den), Math.multiplyExact(other.num, den));
+
+				} catch(ArithmeticException e) {
+
+					// Falls through to BigInteger
+
+				}
+
+			}
+
+			return toBigNum().multiply(other.toBigDen()).compareTo(other.toBigNum().multiply(toBigDen()));
+
+		}
+
 		// Returns fraction multiplied by a multiple of the denominator of every value in the matrix. Then does 2(num*multiple) - multiple 
+		// Throws ArithmeticException if the result doesn't fit in a long, use bigMultiple() then
 		public long multiple() {
 
-			long numCards = cardSets*cards;
-			long multiple = (numCards)*(numCards-1)*(numCards-2);
-			multiple /= Math.pow(2, 3);
-			long toReturn = ((long)(num * (((double)multiple)/den)));
-			return toReturn*2-multiple;
+			if(bigNum==null) {
+
+				long numCards = (long)cardSets*cards;
+				long multiple = Math.multiplyExact(Math.multiplyExact(numCards, numCards-1), numCards-2) / 8;
+				long toReturn = Math.multiplyExact(num, multiple) / den;
+				return Math.subtractExact(Math.multiplyExact(toReturn, 2), multiple);
+
+			}
+
+			return bigMultiple().longValueExact();
+
+		}
+
+		// multiple() computed with BigInteger
+		public BigInteger bigMultiple() {
+
+			BigInteger numCards = BigInteger.valueOf((long)cardSets*cards);
+			BigInteger multiple = numCards.multiply(numCards.subtract(BigInteger.ONE)).multiply(numCards.subtract(BigInteger.TWO)).shiftRight(3);
+			return toBigNum().multiply(multiple).divide(toBigDen()).shiftLeft(1).subtract(multiple);
+
+		}
+
+		// multiple() as text, going through BigInteger only when the long version would overflow
+		public String multipleString() {
+
+			try {
+
+				return Long.toString(multiple());
+
+			} catch(ArithmeticException e) {
+
+				return bigMultiple().toString();
+
+			}
 
 		}
 
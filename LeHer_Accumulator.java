@@ -0,0 +1,389 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32C;
+
+/*
+ * LeHer_Accumulator: Per-cell long win and deal counts for a simulation that can run for days, be checkpointed, resumed
+ * and merged with runs from other processes or hosts.
+ *
+ * Deals come in batches of batchRuns deals per cell, counted by LeHer_Kernel. Batch b's streams are split off the master
+ * seed in batch then cell order, so the first n batches of a seed are the same whether they ran in one go or were resumed
+ * from a checkpoint halfway. Counts only ever add up: merge() adds another accumulator's counts cell by cell, which is
+ * exact as long as the two were dealt from independent seeds, and a cell's estimate is always wins/trials.
+ *
+ * A checkpoint is written to a temporary file and moved into place, so a crash leaves the previous one intact.
+ * Layout, little-endian:
+ *	0	int	MAGIC
+ *	4	int	FORMAT_VERSION
+ *	8	int	LeHer_Kernel.VERSION
+ *	12	int	cardSets
+ *	16	int	cards
+ *	20	int	blockRank
+ *	24	int	1 if ties go to P1
+ *	28	int	batchRuns
+ *	32	long	seed
+ *	40	long	batches dealt from seed
+ *	48	long[2]	reserved
+ *	64	long[size*size]	wins
+ *	...	long[size*size]	trials
+ *	...	int	CRC32C of everything before it
+ */
+
+public class LeHer_Accumulator {
+
+	public static final int MAGIC = 0x6341654C; // "LeAc" in file order
+	public static final int FORMAT_VERSION = 1;
+	public static final int DEFAULT_BATCH_RUNS = 1<<20;
+	private static final int HEADER_BYTES = 64;
+
+	private final int cardSets;
+	private final int cards;
+	private final LeHer_Rules rules;
+	private final int size;
+	private final int batchRuns;
+	private final long seed;
+	private long batches; // Batches dealt from seed; merged counts come on top of them
+	private final long[] wins; // Row-major, size*size
+	private final long[] trials;
+
+	public LeHer_Accumulator(int cardSets, int cards, long seed) {
+
+		this(cardSets, cards, LeHer_Rules.standard(cards), DEFAULT_BATCH_RUNS, seed);
+
+	}
+
+	public LeHer_Accumulator(int cardSets, int cards, LeHer_Rules rules, int batchRuns, long seed) {
+
+		if(rules.getCards()!=cards)
+			throw new IllegalArgumentException("Rule set is for " + rules.getCards() + " cards");
+
+		if((long)cardSets*cards<3 || batchRuns<1)
+			throw new IllegalArgumentException("At least 3 cards and one deal per batch are needed");
+
+		this.cardSets = cardSets;
+		this.cards = cards;
+		this.rules = rules;
+		this.batchRuns = batchRuns;
+		this.seed = seed;
+		size = cards+1;
+		wins = new long[size*size];
+		trials = new long[size*size];
+
+	}
+
+	/*
+	 * Picks up the run saved at checkpoint if it is for the same deck, rules, batch size and seed, otherwise starts over.
+	 * A missing, stale or corrupt checkpoint counts as no checkpoint.
+	 */
+	public static LeHer_Accumulator resume(Path checkpoint, int cardSets, int cards, LeHer_Rules rules, int batchRuns, long seed) {
+
+		LeHer_Accumulator saved = load(checkpoint);
+
+		if(saved!=null && saved.cardSets==cardSets && saved.sameRules(rules) && saved.batchRuns==batchRuns && saved.seed==seed)
+			return saved;
+
+		return new LeHer_Accumulator(cardSets, cards, rules, batchRuns, seed);
+
+	}
+
+	/*
+	 * Deals batches until batches() reaches totalBatches, saving to checkpoint every checkpointNanos and once more at the end.
+	 * checkpoint may be null to keep everything in memory. Cells are dealt in parallel on pool.
+	 */
+	public void run(long totalBatches, ForkJoinPool pool, Path checkpoint, long checkpointNanos) throws IOException {
+
+		LeHer_Kernel kernel = LeHer_Kernel.create(cardSets, cards, rules);
+		SplittableRandom master = new SplittableRandom(seed);
+
+		// Batches already dealt used up their splits
+		for(long batch = 0; batch<batches; batch++)
+			master.split();
+
+		long lastSave = System.nanoTime();
+
+		while(batches<totalBatches) {
+
+			SplittableRandom batch = master.split();
+			SplittableRandom[] streams = new SplittableRandom[size*size];
+
+			for(int cell = 0; cell<streams.length; cell++)
+				streams[cell] = batch.split();
+
+			LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.MATRIX, "LeHer_Accumulator", size);
+			long[] batchWins = new long[streams.length];
+			pool.invoke(new BatchTask(kernel, streams, batchWins, 0, streams.length));
+			timer.matrix(streams.length, (long)streams.length*batchRuns);
+
+			for(int cell = 0; cell<batchWins.length; cell++) {
+
+				wins[cell] += batchWins[cell];
+				trials[cell] += batchRuns;
+
+			}
+
+			batches++;
+
+			if(checkpoint!=null && (batches==totalBatches || System.nanoTime()-lastSave>=checkpointNanos)) {
+
+				save(checkpoint);
+				lastSave = System.nanoTime();
+
+			}
+
+		}
+
+	}
+
+	// Adds the counts of other, which must be for the same deck and rules and dealt from an independent seed
+	public void merge(LeHer_Accumulator other) {
+
+		if(other.cardSets!=cardSets || other.cards!=cards || !sameRules(other.rules))
+			throw new IllegalArgumentException("Accumulators are for different games");
+
+		if(other==this)
+			throw new IllegalArgumentException("An accumulator can't be merged with itself");
+
+		for(int cell = 0; cell<wins.length; cell++) {
+
+			wins[cell] += other.wins[cell];
+			trials[cell] += other.trials[cell];
+
+		}
+
+	}
+
+	public void add(int maxValP1, int maxValP2, long P1Wins, long deals) {
+
+		if(P1Wins<0 || deals<P1Wins)
+			throw new IllegalArgumentException("Invalid counts");
+
+		wins[maxValP1*size+maxValP2] += P1Wins;
+		trials[maxValP1*size+maxValP2] += deals;
+
+	}
+
+	public int getCardSets() {
+
+		return cardSets;
+
+	}
+
+	public int getCards() {
+
+		return cards;
+
+	}
+
+	public LeHer_Rules getRules() {
+
+		return rules;
+
+	}
+
+	public long getSeed() {
+
+		return seed;
+
+	}
+
+	public int getBatchRuns() {
+
+		return batchRuns;
+
+	}
+
+	// Batches dealt from this accumulator's own seed
+	public long batches() {
+
+		return batches;
+
+	}
+
+	public long wins(int maxValP1, int maxValP2) {
+
+		return wins[maxValP1*size+maxValP2];
+
+	}
+
+	public long trials(int maxValP1, int maxValP2) {
+
+		return trials[maxValP1*size+maxValP2];
+
+	}
+
+	// Fewest deals of any cell, which bounds the largest standard error
+	public long minTrials() {
+
+		long min = Long.MAX_VALUE;
+
+		for(long cellTrials: trials)
+			min = Math.min(min, cellTrials);
+
+		return min;
+
+	}
+
+	// wins/trials, NaN before the first deal
+	public double probability(int maxValP1, int maxValP2) {
+
+		long cellTrials = trials(maxValP1, maxValP2);
+		return cellTrials==0 ? Double.NaN : ((double)wins(maxValP1, maxValP2))/cellTrials;
+
+	}
+
+	public double standardError(int maxValP1, int maxValP2) {
+
+		long cellTrials = trials(maxValP1, maxValP2);
+		double p = probability(maxValP1, maxValP2);
+		return cellTrials>1 ? Math.sqrt(p*(1-p)/(cellTrials-1)) : Double.NaN;
+
+	}
+
+	// Writes the counts to a temporary file next to path and moves it into place
+	public void save(Path path) throws IOException {
+
+		final long length = bytes(size);
+
+		if(length>Integer.MAX_VALUE)
+			throw new IOException("Accumulator too large for one file");
+
+		Path directory = path.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+		try {
+
+			ByteBuffer buffer = ByteBuffer.allocate((int)length).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(LeHer_Kernel.VERSION).putInt(cardSets);
+			buffer.putInt(cards).putInt(rules.getBlockRank()).putInt(rules.tiesToP1() ? 1 : 0).putInt(batchRuns);
+			buffer.putLong(seed).putLong(batches).putLong(0L).putLong(0L);
+			buffer.asLongBuffer().put(wins).put(trials);
+			int end = (int)length-Integer.BYTES;
+			CRC32C crc = new CRC32C();
+			crc.update(buffer.array(), 0, end);
+			buffer.putInt(end, (int)crc.getValue());
+
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+
+				buffer.clear();
+
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+
+				channel.force(true);
+
+			}
+
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} finally {
+
+			Files.deleteIfExists(temp);
+
+		}
+
+	}
+
+	// Reads an accumulator back, or returns null if path is missing, stale or corrupt
+	public static LeHer_Accumulator load(Path path) {
+
+		if(!Files.isRegularFile(path))
+			return null;
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			long length = channel.size();
+
+			if(length<HEADER_BYTES+Integer.BYTES || length>Integer.MAX_VALUE)
+				return null;
+
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+
+			if(buffer.getInt(0)!=MAGIC || buffer.getInt(4)!=FORMAT_VERSION || buffer.getInt(8)!=LeHer_Kernel.VERSION)
+				return null;
+
+			int cardSets = buffer.getInt(12);
+			int cards = buffer.getInt(16);
+
+			if(cards<1 || cardSets<1 || length!=bytes(cards+1))
+				return null;
+
+			int end = (int)length-Integer.BYTES;
+			CRC32C crc = new CRC32C();
+			crc.update(buffer.duplicate().position(0).limit(end));
+
+			if((int)crc.getValue()!=buffer.getInt(end))
+				return null;
+
+			LeHer_Rules rules = new LeHer_Rules(cards, buffer.getInt(20), buffer.getInt(24)==1);
+			LeHer_Accumulator accumulator = new LeHer_Accumulator(cardSets, cards, rules, buffer.getInt(28), buffer.getLong(32));
+			accumulator.batches = buffer.getLong(40);
+			LongBuffer longs = buffer.position(HEADER_BYTES).limit(end).slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			longs.get(accumulator.wins).get(accumulator.trials);
+			return accumulator;
+
+		} catch(IOException | IllegalArgumentException e) {
+
+			return null;
+
+		}
+
+	}
+
+	private boolean sameRules(LeHer_Rules other) {
+
+		return other.getCards()==cards && other.getBlockRank()==rules.getBlockRank() && other.tiesToP1()==rules.tiesToP1();
+
+	}
+
+	// Size of the file for a size x size matrix
+	private static long bytes(int size) {
+
+		return HEADER_BYTES + 16L*size*size + Integer.BYTES;
+
+	}
+
+	// Counts one batch of every cell in [from, to), splitting the range in half until one cell is left
+	private class BatchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final LeHer_Kernel kernel;
+		private final SplittableRandom[] streams;
+		private final long[] batchWins; // One per cell, shared by every task of the batch
+		private final int from;
+		private final int to;
+
+		private BatchTask(LeHer_Kernel kernel, SplittableRandom[] streams, long[] batchWins, int from, int to) {
+
+			this.kernel = kernel;
+			this.streams = streams;
+			this.batchWins = batchWins;
+			this.from = from;
+			this.to = to;
+
+		}
+
+		protected void compute() {
+
+			if(to-from>1) {
+
+				int middle = (from+to)>>>1;
+				invokeAll(new BatchTask(kernel, streams, batchWins, from, middle), new BatchTask(kernel, streams, batchWins, middle, to));
+				return;
+
+			}
+
+			// Each cell is written by exactly one task
+			for(int cell = from; cell<to; cell++)
+				batchWins[cell] = kernel.P1Wins(streams[cell], batchRuns, cell/size, cell%size);
+
+		}
+
+	}
+
+}
@@ -0,0 +1,481 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+ * LeHer_AdaptiveSimulation: Simulation that keeps dealing only where the dominance elimination still needs it.
+ *
+ * Deals are stratified by P1Card, which takes every value with probability exactly 1/cards. Like SINGLE_PASS, one deal
+ * decides every cell at once: rows >= P1Card swap and all get the same outcome, rows < P1Card keep and their outcome only
+ * changes at column P2Card. So each stratum only needs O(cards) counters, updated in O(1) per deal, and every cell is
+ * estimated from the same deals. Two cells in the same row or column then differ only on the deals where their outcomes
+ * differ, and the variance of their difference comes from those deals alone, which is far smaller than the variance of
+ * either cell. Two cells that agree on every deal so far count as tied at once.
+ *
+ * Each round runs LeHer_Dominance on the estimates, classifying every comparison it asks for as
+ *
+ *	GREATER/LESS	the difference is outside zero with the requested confidence
+ *	EQUAL		the difference is within +-epsilon with the requested confidence, so it's treated as a tie
+ *	UNDECIDED	neither; it counts as "could be better" both ways, so it never lets a strategy be eliminated
+ *
+ * and only the strata that an UNDECIDED comparison depends on get more deals: P1Card in (row, otherRow] when comparing
+ * two rows and P1Card > row when comparing two columns. A stratum that gets more deals doubles its count. Dealing stops
+ * once a round has no UNDECIDED comparison, or when the deal or time budget runs out, in which case isDecided() is false
+ * and the survivors are a superset of the decided ones.
+ *
+ * The confidence applies to each comparison on its own, and the repeated looks of later rounds aren't corrected for.
+ * Every stratum draws from its own SplittableRandom split off the seed in order, so results don't depend on the thread count.
+ */
+
+public class LeHer_AdaptiveSimulation {
+
+	public enum Comparison { LESS, EQUAL, GREATER, UNDECIDED }
+
+	public static final long INITIAL_DEALS = 1<<12; // Per P1Card value
+	public static final double DEFAULT_EPSILON = 1e-4;
+
+	private final int cardSets;
+	private final int cards;
+	private final int size;
+	private final LeHer_Rules rules;
+	private final double z; // Two-sided normal quantile of the confidence
+	private final double epsilon;
+	private final long[] deals; // deals[a] hands dealt with P1Card = a
+	private final long[] swapWins; // Wins of the rows that swap, which is every row >= a
+	private final long[][] keepWins; // keepWins[a][col], wins of the rows < a in column col
+	private final long[][] discordant; // discordant[a][col], hands where swapping and keeping end differently in column col
+	private final long[][] P2Changes; // P2Changes[a][b], hands where P2Card = b and P2 swapping changes the outcome, summed over P2Card <= b
+	private final SplittableRandom[] streams;
+	private final ForkJoinPool pool;
+	private long totalDeals;
+	private int rounds;
+	private boolean decided;
+	private ArrayList<ArrayList<Integer>> solution;
+
+	public LeHer_AdaptiveSimulation(int cardSets, int cards, double confidence, long seed) {
+
+		this(cardSets, cards, confidence, DEFAULT_EPSILON, Long.MAX_VALUE, Long.MAX_VALUE, seed, ForkJoinPool.commonPool());
+
+	}
+
+	// Plays a variant of the game; LeHer_Rules.standard(cards) gives the same results as the constructor without rules
+	public LeHer_AdaptiveSimulation(int cardSets, int cards, double confidence, LeHer_Rules rules, long seed) {
+
+		this(cardSets, cards, confidence, DEFAULT_EPSILON, Long.MAX_VALUE, Long.MAX_VALUE, rules, seed, ForkJoinPool.commonPool());
+
+	}
+
+	/*
+	 * confidence is the probability that a single comparison is classified correctly, e.g. 0.999.
+	 * Cells closer than epsilon count as tied. Dealing also stops after maxDeals deals in total or timeBudgetNanos.
+	 */
+	public LeHer_AdaptiveSimulation(int cardSets, int cards, double confidence, double epsilon, long maxDeals, long timeBudgetNanos, long seed, ForkJoinPool pool) {
+
+		this(cardSets, cards, confidence, epsilon, maxDeals, timeBudgetNanos, LeHer_Rules.standard(cards), seed, pool);
+
+	}
+
+	public LeHer_AdaptiveSimulation(int cardSets, int cards, double confidence, double epsilon, long maxDeals, long timeBudgetNanos, LeHer_Rules rules, long seed, ForkJoinPool pool) {
+
+		if(rules.getCards()!=cards)
+			throw new IllegalArgumentException("Rule set is for " + rules.getCards() + " cards");
+
+		if(!(confidence>0.5 && confidence<1.0))
+			throw new IllegalArgumentException("confidence must be in (0.5, 1)");
+
+		if(!(epsilon>0.0))
+			throw new IllegalArgumentException("epsilon must be positive");
+
+		if(maxDeals/INITIAL_DEALS<cards)
+			throw new IllegalArgumentException("maxDeals must cover INITIAL_DEALS deals for every P1Card");
+
+		this.cardSets = cardSets;
+		this.cards = cards;
+		this.rules = rules;
+		size = cards+1;
+		z = inverseNormal(1-(1-confidence)/2);
+		this.epsilon = epsilon;
+		this.pool = pool;
+		deals = new long[size];
+		swapWins = new long[size];
+		keepWins = new long[size][];
+		discordant = new long[size][];
+		P2Changes = new long[size][];
+		streams = new SplittableRandom[size];
+		SplittableRandom master = new SplittableRandom(seed);
+
+		for(int P1Card = 1; P1Card<=cards; P1Card++) {
+
+			keepWins[P1Card] = new long[size];
+			discordant[P1Card] = new long[size];
+			P2Changes[P1Card] = new long[size];
+			streams[P1Card] = master.split();
+
+		}
+
+		solve(maxDeals, System.nanoTime()+Math.min(timeBudgetNanos, Long.MAX_VALUE/2));
+
+	}
+
+	private void solve(long maxDeals, long deadline) {
+
+		long[] batch = new long[size];
+		Arrays.fill(batch, 1, size, INITIAL_DEALS);
+
+		while(true) {
+
+			// Trims the round to what's left of the budget, in order so it stays reproducible
+			long left = maxDeals-totalDeals;
+
+			for(int P1Card = 1; P1Card<=cards; P1Card++) {
+
+				batch[P1Card] = Math.min(batch[P1Card], Math.max(0L, left));
+				left -= batch[P1Card];
+
+			}
+
+			LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.MATRIX, "LeHer_AdaptiveSimulation", size);
+			pool.invoke(new DealTask(batch, 1, size));
+			rounds++;
+			long dealt = 0L;
+
+			for(long stratum: batch)
+				dealt += stratum;
+
+			totalDeals += dealt;
+			timer.matrix((long)size*size, dealt);
+
+			BitSet undecided = new BitSet(size);
+			LeHer_Dominance dominance = new LeHer_Dominance(size, (row, col, otherRow, otherCol) -> {
+
+				Comparison comparison = compare(row, col, otherRow, otherCol);
+
+				if(comparison==Comparison.UNDECIDED) {
+
+					// The strata where the two cells can end differently
+					if(col==otherCol)
+						undecided.set(Math.min(row, otherRow)+1, Math.max(row, otherRow)+1);
+
+					else
+						undecided.set(Math.min(row, otherRow)+1, size);
+
+					return 1; // Both directions "might be better", so nothing is eliminated on it
+
+				}
+
+				return comparison==Comparison.GREATER ? 1 : comparison==Comparison.LESS ? -1 : 0;
+
+			});
+
+			solution = dominance.toLists();
+			decided = undecided.isEmpty();
+
+			if(decided || totalDeals>=maxDeals || System.nanoTime()-deadline>=0)
+				return;
+
+			Arrays.fill(batch, 0L);
+
+			for(int P1Card = undecided.nextSetBit(1); P1Card>=0; P1Card = undecided.nextSetBit(P1Card+1))
+				batch[P1Card] = deals[P1Card];
+
+		}
+
+	}
+
+	/*
+	 * Classifies the difference between two cells from a normal approximation confidence interval. Cells in the same
+	 * row or column are compared on the deals they share, any other pair as two separate estimates.
+	 */
+	public Comparison compare(int row, int col, int otherRow, int otherCol) {
+
+		double difference = 0.0;
+		double variance = 0.0;
+
+		if(col==otherCol && row!=otherRow) {
+
+			// The higher row swaps and the lower one keeps for P1Card in (low, high]
+			int low = Math.min(row, otherRow);
+			int high = Math.max(row, otherRow);
+
+			for(int P1Card = low+1; P1Card<=high; P1Card++) {
+
+				double n = deals[P1Card];
+				double mean = (swapWins[P1Card]-keepWins[P1Card][col])/n;
+				difference += mean;
+				variance += variance(mean, discordant[P1Card][col], n)/n;
+
+			}
+
+			if(row<otherRow)
+				difference = -difference;
+
+		}
+
+		else if(row==otherRow && col!=otherCol) {
+
+			// Only rows that keep depend on the column, and the two columns only differ when P2Card is in (low, high]
+			int low = Math.min(col, otherCol);
+			int high = Math.max(col, otherCol);
+
+			for(int P1Card = row+1; P1Card<=cards; P1Card++) {
+
+				double n = deals[P1Card];
+				double mean = (keepWins[P1Card][high]-keepWins[P1Card][low])/n;
+				difference += mean;
+				variance += variance(mean, P2Changes[P1Card][high]-P2Changes[P1Card][low], n)/n;
+
+			}
+
+			if(col<otherCol)
+				difference = -difference;
+
+		}
+
+		else if(row!=otherRow) {
+
+			difference = probability(row, col)-probability(otherRow, otherCol);
+			variance = cellVariance(row, col)+cellVariance(otherRow, otherCol);
+
+		}
+
+		difference /= cards;
+		double margin = z*Math.sqrt(variance)/cards;
+
+		if(difference-margin>0)
+			return Comparison.GREATER;
+
+		if(difference+margin<0)
+			return Comparison.LESS;
+
+		if(Math.abs(difference)+margin<epsilon)
+			return Comparison.EQUAL;
+
+		return Comparison.UNDECIDED;
+
+	}
+
+	// P1's estimated win probability, each P1Card weighted by its exact probability 1/cards
+	public double probability(int maxValP1, int maxValP2) {
+
+		double probability = 0.0;
+
+		for(int P1Card = 1; P1Card<=cards; P1Card++)
+			probability += ((double)(P1Card<=maxValP1 ? swapWins[P1Card] : keepWins[P1Card][maxValP2]))/deals[P1Card];
+
+		return probability/cards;
+
+	}
+
+	// Hands dealt with the given P1Card; every cell is estimated from all of them
+	public long deals(int P1Card) {
+
+		return deals[P1Card];
+
+	}
+
+	// Bounds of the confidence interval of the cell
+	public double lower(int maxValP1, int maxValP2) {
+
+		return Math.max(0.0, probability(maxValP1, maxValP2)-z*Math.sqrt(cellVariance(maxValP1, maxValP2))/cards);
+
+	}
+
+	public double upper(int maxValP1, int maxValP2) {
+
+		return Math.min(1.0, probability(maxValP1, maxValP2)+z*Math.sqrt(cellVariance(maxValP1, maxValP2))/cards);
+
+	}
+
+	public long totalDeals() {
+
+		return totalDeals;
+
+	}
+
+	public int rounds() {
+
+		return rounds;
+
+	}
+
+	// True if every comparison the elimination asked for was settled before the budget ran out
+	public boolean isDecided() {
+
+		return decided;
+
+	}
+
+	// Returns strictly dominant strategies for both players (P1 strategies in ArrayList.get(0), P2 in ArrayList.get(1))
+	public ArrayList<ArrayList<Integer>> strictlyDominantStrategy() {
+
+		return solution;
+
+	}
+
+	public String toString() {
+
+		StringBuilder toReturn = new StringBuilder("P1 Dominant Strategies: ");
+
+		for(int P1DominantStrategy: solution.get(0))
+			toReturn.append(' ').append(P1DominantStrategy);
+
+		toReturn.append("\nP2 Dominant Strategies: ");
+
+		for(int P2DominantStrategy: solution.get(1))
+			toReturn.append(' ').append(P2DominantStrategy);
+
+		return toReturn.append("\nDeals: ").append(totalDeals).append(" in ").append(rounds).append(" rounds")
+				.append(decided ? "" : " (budget ran out before dominance was decided)").append('\n').toString();
+
+	}
+
+	// Variance of cards times the cell's estimate, summed over the strata
+	private double cellVariance(int maxValP1, int maxValP2) {
+
+		double variance = 0.0;
+
+		for(int P1Card = 1; P1Card<=cards; P1Card++) {
+
+			double n = deals[P1Card];
+			long wins = P1Card<=maxValP1 ? swapWins[P1Card] : keepWins[P1Card][maxValP2];
+			variance += variance(wins/n, wins, n)/n;
+
+		}
+
+		return variance;
+
+	}
+
+	/*
+	 * Variance of one deal's contribution, a value in {-1, 0, 1} with the given mean that is nonzero on nonzero of n deals.
+	 * Two cells that never differed on any deal get no variance, so they count as tied right away; a difference rarer
+	 * than one in INITIAL_DEALS hands can be missed that way.
+	 */
+	private static double variance(double mean, long nonzero, double n) {
+
+		return Math.max(0.0, nonzero/n - mean*mean);
+
+	}
+
+	/*
+	 * Quantile of the standard normal distribution, Acklam's rational approximation (relative error below 1.2e-9),
+	 * which is far more precise than a confidence level needs.
+	 */
+	private static double inverseNormal(double p) {
+
+		final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02, 1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+		final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02, 6.680131188771972e+01, -1.328068155288572e+01};
+		final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00, -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+		final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00, 3.754408661907416e+00};
+
+		if(p<0.02425) {
+
+			double q = Math.sqrt(-2*Math.log(p));
+			return (((((c[0]*q+c[1])*q+c[2])*q+c[3])*q+c[4])*q+c[5])/((((d[0]*q+d[1])*q+d[2])*q+d[3])*q+1);
+
+		}
+
+		if(p>1-0.02425)
+			return -inverseNormal(1-p);
+
+		double q = p-0.5;
+		double r = q*q;
+		return (((((a[0]*r+a[1])*r+a[2])*r+a[3])*r+a[4])*r+a[5])*q/(((((b[0]*r+b[1])*r+b[2])*r+b[3])*r+b[4])*r+1);
+
+	}
+
+	// Deals each stratum's batch from its own stream
+	private class DealTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[] batch;
+		private final int from;
+		private final int to;
+
+		DealTask(long[] batch, int from, int to) {
+
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+
+		}
+
+		protected void compute() {
+
+			if(to-from<=1) {
+
+				for(int P1Card = from; P1Card<to; P1Card++)
+					if(batch[P1Card]>0)
+						deal(P1Card, batch[P1Card]);
+
+				return;
+
+			}
+
+			int mid = (from+to)>>>1;
+			invokeAll(new DealTask(batch, from, mid), new DealTask(batch, mid, to));
+
+		}
+
+		/*
+		 * Adds hands deals with P1Card = a. Columns before P2Card see P2 keep and columns from P2Card on see P2 swap,
+		 * so the per-column counters are built as difference arrays and summed up once at the end.
+		 */
+		private void deal(int a, long hands) {
+
+			int[] drawnCards = new int[3];
+			long[] keep = new long[size+1];
+			long[] differ = new long[size+1];
+			long[] changes = new long[size+1];
+			long swaps = 0L;
+
+			for(long numSims = 0; numSims<hands; numSims++) {
+
+				// Same outcomes as LeHer_Simulation.P1Winner(), split by who swaps
+				LeHer_Simulation.deal(cardSets, cards, streams[a], a-1, drawnCards);
+				final int b = drawnCards[1];
+				final int c = drawnCards[2];
+				boolean swap = rules.swapWins(a, b, c);
+				boolean P2Keeps = rules.P2KeepWins(a, b);
+				boolean P2Swaps = rules.P2SwapWins(a, b, c);
+
+				if(swap)
+					swaps++;
+
+				// Columns [0, b) see P2Keeps, columns [b, cards] see P2Swaps
+				int keepWin = P2Keeps ? 1 : 0;
+				int swapWin = P2Swaps ? 1 : 0;
+				keep[0] += keepWin;
+				keep[b] += swapWin-keepWin;
+				int keepDiffers = swap!=P2Keeps ? 1 : 0;
+				int swapDiffers = swap!=P2Swaps ? 1 : 0;
+				differ[0] += keepDiffers;
+				differ[b] += swapDiffers-keepDiffers;
+
+				if(P2Keeps!=P2Swaps)
+					changes[b]++;
+
+			}
+
+			deals[a] += hands;
+			swapWins[a] += swaps;
+			long keepSum = 0L;
+			long differSum = 0L;
+			long changeSum = 0L;
+
+			for(int col = 0; col<size; col++) {
+
+				keepSum += keep[col];
+				differSum += differ[col];
+				changeSum += changes[col];
+				keepWins[a][col] += keepSum;
+				discordant[a][col] += differSum;
+				P2Changes[a][col] += changeSum;
+
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,216 @@
+import java.util.*;
+
+/*
+ * LeHer_BestResponse: Best thresholds against a fixed opponent threshold, read straight off LeHer_MatrixView without
+ * building the matrix, and best-response dynamics on top of them.
+ *
+ * P1 keeps the row that maximizes P1's win probability in the opponent's column, P2 the column that minimizes it in
+ * P1's row. scan() looks at every threshold, O(n) cells of O(1) each. search() assumes the payoff rises strictly up to the
+ * best threshold and never rises after it, which holds along every row and column of every deck checked so far, and
+ * binary searches for the first threshold that doesn't improve on the next one in O(log n). Ties go to the lowest
+ * threshold either way, so both agree whenever the assumption holds.
+ */
+
+public class LeHer_BestResponse {
+
+	// A best threshold and P1's win probability when it is played
+	public static final class Response {
+
+		private final int threshold;
+		private final double probability;
+
+		private Response(int threshold, double probability) {
+
+			this.threshold = threshold;
+			this.probability = probability;
+
+		}
+
+		public int threshold() {
+
+			return threshold;
+
+		}
+
+		// P1's win probability, whichever player responded
+		public double probability() {
+
+			return probability;
+
+		}
+
+		public String toString() {
+
+			return threshold + " (" + probability + ")";
+
+		}
+
+	}
+
+	// Where best-response dynamics stopped
+	public static final class Dynamics {
+
+		private final int maxValP1;
+		private final int maxValP2;
+		private final int rounds;
+		private final boolean converged;
+
+		private Dynamics(int maxValP1, int maxValP2, int rounds, boolean converged) {
+
+			this.maxValP1 = maxValP1;
+			this.maxValP2 = maxValP2;
+			this.rounds = rounds;
+			this.converged = converged;
+
+		}
+
+		public int maxValP1() {
+
+			return maxValP1;
+
+		}
+
+		public int maxValP2() {
+
+			return maxValP2;
+
+		}
+
+		public int rounds() {
+
+			return rounds;
+
+		}
+
+		// True if both thresholds are best responses to each other, a pure equilibrium; false on a cycle or the round limit
+		public boolean converged() {
+
+			return converged;
+
+		}
+
+		public String toString() {
+
+			return "P1: " + maxValP1 + ", P2: " + maxValP2 + ", Rounds: " + rounds + (converged ? ", Converged" : ", Not Converged");
+
+		}
+
+	}
+
+	private final LeHer_MatrixView view;
+	private final int cards;
+
+	public LeHer_BestResponse(int cardSets, int cards) {
+
+		this(new LeHer_MatrixView(cardSets, cards));
+
+	}
+
+	public LeHer_BestResponse(LeHer_MatrixView view) {
+
+		this.view = view;
+		cards = view.size()-1;
+
+	}
+
+	// P1's best threshold against maxValP2, checking every row
+	public Response scanP1(int maxValP2) {
+
+		int best = 0;
+
+		for(int maxValP1 = 1; maxValP1<=cards; maxValP1++)
+			if(view.compare(maxValP1, maxValP2, best, maxValP2)>0)
+				best = maxValP1;
+
+		return new Response(best, view.toDecimal(best, maxValP2));
+
+	}
+
+	// P2's best threshold against maxValP1, checking every column
+	public Response scanP2(int maxValP1) {
+
+		int best = 0;
+
+		for(int maxValP2 = 1; maxValP2<=cards; maxValP2++)
+			if(view.compare(maxValP1, maxValP2, maxValP1, best)<0)
+				best = maxValP2;
+
+		return new Response(best, view.toDecimal(maxValP1, best));
+
+	}
+
+	// P1's best threshold against maxValP2 by binary search, for payoffs that are unimodal along the column
+	public Response searchP1(int maxValP2) {
+
+		int low = 0;
+		int high = cards;
+
+		// First row that doesn't do better than the one after it
+		while(low<high) {
+
+			int middle = (low+high)>>>1;
+
+			if(view.compare(middle+1, maxValP2, middle, maxValP2)>0)
+				low = middle+1;
+
+			else
+				high = middle;
+
+		}
+
+		return new Response(low, view.toDecimal(low, maxValP2));
+
+	}
+
+	// P2's best threshold against maxValP1 by binary search, for payoffs that are unimodal along the row
+	public Response searchP2(int maxValP1) {
+
+		int low = 0;
+		int high = cards;
+
+		while(low<high) {
+
+			int middle = (low+high)>>>1;
+
+			if(view.compare(maxValP1, middle+1, maxValP1, middle)<0)
+				low = middle+1;
+
+			else
+				high = middle;
+
+		}
+
+		return new Response(low, view.toDecimal(maxValP1, low));
+
+	}
+
+	/*
+	 * Starting from P2 playing maxValP2, lets P1 and then P2 switch to their best response until neither wants to switch,
+	 * a pair repeats or maxRounds rounds have gone by. search picks search() over scan() for every response.
+	 */
+	public Dynamics dynamics(int maxValP2, int maxRounds, boolean search) {
+
+		HashSet<Long> seen = new HashSet<Long>();
+		int maxValP1 = -1;
+
+		for(int round = 1; round<=maxRounds; round++) {
+
+			int P1 = (search ? searchP1(maxValP2) : scanP1(maxValP2)).threshold();
+			int P2 = (search ? searchP2(P1) : scanP2(P1)).threshold();
+
+			if(P1==maxValP1 && P2==maxValP2)
+				return new Dynamics(P1, P2, round, true);
+
+			maxValP1 = P1;
+			maxValP2 = P2;
+
+			if(!seen.add(((long)P1<<32)|P2))
+				return new Dynamics(P1, P2, round, false);
+
+		}
+
+		return new Dynamics(maxValP1, maxValP2, maxRounds, false);
+
+	}
+
+}
@@ -0,0 +1,373 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+ * LeHer_Cache: Thread-safe memoizing front for LeHer, LeHer_Simplified and LeHer_Simulation.
+ * Solved instances are kept in LRU order and bounded by total weight, where an instance weighs (cards+1)^2, its number of cells.
+ * A key that is still being solved maps to the future of that one computation, so concurrent requests for it wait
+ * on it instead of solving it again. A failed computation is dropped, so the next request retries it.
+ *
+ * CLASSIC simulations use Math.random() and can't be reproduced, so they're solved on every call and never cached.
+ */
+
+public class LeHer_Cache {
+
+	public enum Engine { ANALYTICAL, SIMPLIFIED, SIMULATION }
+
+	private static final class Key {
+
+		private final Engine engine;
+		private final int cardSets;
+		private final int cards;
+		private final int runs;
+		private final LeHer_Simulation.Mode mode;
+		private final long seed;
+
+		private Key(Engine engine, int cardSets, int cards, int runs, LeHer_Simulation.Mode mode, long seed) {
+
+			this.engine = engine;
+			this.cardSets = cardSets;
+			this.cards = cards;
+			this.runs = runs;
+			this.mode = mode;
+			this.seed = seed;
+
+		}
+
+		private long weight() {
+
+			return ((long)cards+1)*(cards+1);
+
+		}
+
+		public boolean equals(Object other) {
+
+			if(!(other instanceof Key))
+				return false;
+
+			Key key = (Key)other;
+			return engine==key.engine && cardSets==key.cardSets && cards==key.cards && runs==key.runs && mode==key.mode && seed==key.seed;
+
+		}
+
+		public int hashCode() {
+
+			return Objects.hash(engine, cardSets, cards, runs, mode, seed);
+
+		}
+
+	}
+
+	// Snapshot of the cache counters
+	public static final class Stats {
+
+		private final long hits;
+		private final long misses;
+		private final long loadFailures;
+		private final long evictions;
+		private final long totalLoadNanos;
+		private final long weight;
+		private final int size;
+
+		private Stats(long hits, long misses, long loadFailures, long evictions, long totalLoadNanos, long weight, int size) {
+
+			this.hits = hits;
+			this.misses = misses;
+			this.loadFailures = loadFailures;
+			this.evictions = evictions;
+			this.totalLoadNanos = totalLoadNanos;
+			this.weight = weight;
+			this.size = size;
+
+		}
+
+		// Requests answered by a solved or in-flight entry
+		public long hits() {
+
+			return hits;
+
+		}
+
+		// Requests that had to solve their key
+		public long misses() {
+
+			return misses;
+
+		}
+
+		public long loadFailures() {
+
+			return loadFailures;
+
+		}
+
+		public long evictions() {
+
+			return evictions;
+
+		}
+
+		public long totalLoadNanos() {
+
+			return totalLoadNanos;
+
+		}
+
+		public double averageLoadNanos() {
+
+			return misses==0 ? 0.0 : ((double)totalLoadNanos)/misses;
+
+		}
+
+		public double hitRate() {
+
+			return hits+misses==0 ? 0.0 : ((double)hits)/(hits+misses);
+
+		}
+
+		// Total weight of the solved entries currently held
+		public long weight() {
+
+			return weight;
+
+		}
+
+		public int size() {
+
+			return size;
+
+		}
+
+		public String toString() {
+
+			return "Hits: " + hits + ", Misses: " + misses + ", Load Failures: " + loadFailures + ", Evictions: " + evictions
+					+ ", Average Load: " + String.format("%.3f", averageLoadNanos()/1e6) + " ms, Weight: " + weight + ", Size: " + size;
+
+		}
+
+	}
+
+	private final long maxWeight;
+	private final LeHer_Store store; // null if solutions aren't persisted
+	private final LinkedHashMap<Key, CompletableFuture<Object>> entries = new LinkedHashMap<Key, CompletableFuture<Object>>(16, 0.75f, true);
+	private long weight; // Weight of the completed entries, guarded by entries
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loadFailures = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder loadNanos = new LongAdder();
+
+	public LeHer_Cache(long maxWeight) {
+
+		this(maxWeight, null);
+
+	}
+
+	// Misses of LeHer_Simplified and seeded LeHer_Simulation are read from or saved to store before solving
+	public LeHer_Cache(long maxWeight, LeHer_Store store) {
+
+		if(maxWeight<=0)
+			throw new IllegalArgumentException("maxWeight must be positive");
+
+		this.maxWeight = maxWeight;
+		this.store = store;
+
+	}
+
+	public LeHer analytical(int cardSets, int cards) {
+
+		return (LeHer)get(new Key(Engine.ANALYTICAL, cardSets, cards, 0, null, 0L), () -> new LeHer(cardSets, cards));
+
+	}
+
+	public LeHer_Simplified simplified(int cardSets, int cards) {
+
+		return (LeHer_Simplified)get(new Key(Engine.SIMPLIFIED, cardSets, cards, 0, null, 0L),
+				() -> store==null ? new LeHer_Simplified(cardSets, cards) : new LeHer_Simplified(cardSets, cards, store));
+
+	}
+
+	public LeHer_Simulation simulation(int cardSets, int cards, int runs, LeHer_Simulation.Mode mode, long seed) {
+
+		if(mode==LeHer_Simulation.Mode.CLASSIC)
+			return new LeHer_Simulation(cardSets, cards, runs, mode, seed);
+
+		return (LeHer_Simulation)get(new Key(Engine.SIMULATION, cardSets, cards, runs, mode, seed),
+				() -> store==null ? new LeHer_Simulation(cardSets, cards, runs, mode, seed) : new LeHer_Simulation(cardSets, cards, runs, mode, seed, store));
+
+	}
+
+	// The solution simplified() would return if it is already there, null if getting it would mean solving
+	public LeHer_Simplified simplifiedIfPresent(int cardSets, int cards) {
+
+		return (LeHer_Simplified)getIfPresent(new Key(Engine.SIMPLIFIED, cardSets, cards, 0, null, 0L));
+
+	}
+
+	// The solution simulation() would return if it is already there, null if getting it would mean simulating
+	public LeHer_Simulation simulationIfPresent(int cardSets, int cards, int runs, LeHer_Simulation.Mode mode, long seed) {
+
+		if(mode==LeHer_Simulation.Mode.CLASSIC)
+			return null;
+
+		return (LeHer_Simulation)getIfPresent(new Key(Engine.SIMULATION, cardSets, cards, runs, mode, seed));
+
+	}
+
+	public Stats stats() {
+
+		synchronized(entries) {
+
+			return new Stats(hits.sum(), misses.sum(), loadFailures.sum(), evictions.sum(), loadNanos.sum(), weight, entries.size());
+
+		}
+
+	}
+
+	public void invalidateAll() {
+
+		synchronized(entries) {
+
+			// In-flight loads keep going for their waiters but won't be found by new requests
+			entries.clear();
+			weight = 0L;
+
+		}
+
+	}
+
+	// Returns the cached value for key, solving it on this thread if nobody has or is
+	private Object get(Key key, Supplier<Object> loader) {
+
+		CompletableFuture<Object> future;
+		boolean load = false;
+
+		synchronized(entries) {
+
+			future = entries.get(key);
+
+			if(future==null) {
+
+				future = new CompletableFuture<Object>();
+				entries.put(key, future);
+				load = true;
+
+			}
+
+		}
+
+		if(!load) {
+
+			hits.increment();
+			return join(future);
+
+		}
+
+		misses.increment();
+		long start = System.nanoTime();
+		Object value;
+
+		try {
+
+			value = loader.get();
+
+		} catch(RuntimeException | Error e) {
+
+			loadNanos.add(System.nanoTime()-start);
+			loadFailures.increment();
+
+			synchronized(entries) {
+
+				entries.remove(key, future);
+
+			}
+
+			future.completeExceptionally(e);
+			throw e;
+
+		}
+
+		loadNanos.add(System.nanoTime()-start);
+
+		synchronized(entries) {
+
+			// Completed under the lock so that evict() only ever sees done entries that were already counted
+			future.complete(value);
+
+			// invalidateAll() may have dropped the key while it was being solved
+			if(entries.get(key)==future) {
+
+				weight += key.weight();
+				evict();
+
+			}
+
+		}
+
+		return value;
+
+	}
+
+	// Returns the solved value for key and counts a hit, or null without counting anything if it is missing or still in flight
+	private Object getIfPresent(Key key) {
+
+		synchronized(entries) {
+
+			CompletableFuture<Object> future = entries.get(key);
+
+			// Failed loads are removed before they complete, so a done entry always holds a value
+			if(future==null || !future.isDone())
+				return null;
+
+			hits.increment();
+			return future.join();
+
+		}
+
+	}
+
+	// Drops solved entries from least recently used on until the weight fits, called while holding entries
+	private void evict() {
+
+		Iterator<Map.Entry<Key, CompletableFuture<Object>>> iterator = entries.entrySet().iterator();
+
+		while(weight>maxWeight && iterator.hasNext()) {
+
+			Map.Entry<Key, CompletableFuture<Object>> entry = iterator.next();
+
+			// In-flight entries aren't counted in weight yet
+			if(entry.getValue().isDone()) {
+
+				iterator.remove();
+				weight -= entry.getKey().weight();
+				evictions.increment();
+
+			}
+
+		}
+
+	}
+
+	private static Object join(CompletableFuture<Object> future) {
+
+		try {
+
+			return future.join();
+
+		} catch(CompletionException e) {
+
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+
+			if(e.getCause() instanceof Error)
+				throw (Error)e.getCause();
+
+			throw e;
+
+		}
+
+	}
+
+}
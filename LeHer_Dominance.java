@@ -0,0 +1,311 @@
+import java.util.*;
+
+/*
+ * LeHer_Dominance: Iterated elimination of strictly dominated strategies without recursion.
+ * P1 picks rows and wants a higher win probability, P2 picks columns and wants a lower one.
+ * Survivors are kept in BitSets and passes alternate between rows and columns until neither loses a strategy.
+ *
+ * For every pair (strategy, possible dominator) the last column (or row) that proved "not dominated" is remembered
+ * as a witness. Since survivors only ever shrink, the pair doesn't need to be looked at again until that witness is
+ * eliminated, and the scan then picks up right after it. Each pair is scanned O(n) times in total instead of once
+ * per round. The witnesses take two chars per pair, so they're skipped for matrices larger than WITNESS_LIMIT cells.
+ *
+ * A LeHer_Matrix whose numerators all fit in longs is scanned packed instead of cell by cell through Payoff: rows straight
+ * from its row-major array and columns from a transposed copy, negated so P2 also wants the larger value, with
+ * LeHer_DominanceKernel comparing whole vectors of the opponent's survivors at a time.
+ */
+
+public class LeHer_Dominance {
+
+	// Compares P1's win probability in two cells, returning a negative, zero or positive int like Long.compare
+	public interface Payoff {
+
+		int compare(int row, int col, int otherRow, int otherCol);
+
+	}
+
+	public static final int VERSION = 1; // Bump when which strategies survive changes, so LeHer_Store drops old survivors
+
+	private static final long WITNESS_LIMIT = 1L<<25;
+	private static final char UNKNOWN = 0; // Witnesses are stored as index+1 so a fresh array means unknown
+	private static final char EQUAL = Character.MAX_VALUE; // Equal on every survivor, which stays true as survivors shrink
+
+	private final int size;
+	private final Payoff payoff;
+	private final BitSet rows;
+	private final BitSet cols;
+	private final char[] rowWitness;
+	private final char[] colWitness;
+	private final long[] rowLines; // Row-major numerators, null unless scanning packed
+	private final long[] colLines; // Negated numerators in column-major order
+	private final long[] rowAlive; // Same as rows, -1 for a survivor and 0 otherwise, the form the kernel masks with
+	private final long[] colAlive;
+	private final LeHer_DominanceKernel kernel;
+	private int rounds;
+	private long comparisons;
+
+	// Eliminates strategies on a size x size matrix until only non-dominated ones are left
+	public LeHer_Dominance(int size, Payoff payoff) {
+
+		this(size, payoff, null);
+
+	}
+
+	public LeHer_Dominance(LeHer_Matrix matrix) {
+
+		this(matrix.size(), matrix, matrix.isBig() ? null : matrix.packed());
+
+	}
+
+	private LeHer_Dominance(int size, Payoff payoff, long[] packed) {
+
+		this.size = size;
+		this.payoff = payoff;
+		rows = new BitSet(size);
+		cols = new BitSet(size);
+		rows.set(0, size);
+		cols.set(0, size);
+		boolean witnesses = (long)size*size<=WITNESS_LIMIT;
+		rowWitness = witnesses ? new char[size*size] : null;
+		colWitness = witnesses ? new char[size*size] : null;
+		rowLines = packed;
+		colLines = packed==null ? null : transpose(packed, size);
+		rowAlive = packed==null ? null : new long[size];
+		colAlive = packed==null ? null : new long[size];
+		kernel = packed==null ? null : LeHer_DominanceKernel.create();
+
+		if(packed!=null) {
+
+			Arrays.fill(rowAlive, -1L);
+			Arrays.fill(colAlive, -1L);
+
+		}
+
+		LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.DOMINANCE, "LeHer_Dominance", size);
+		eliminate();
+		timer.dominance(rounds, comparisons);
+
+	}
+
+	// Rows (P1 strategies) that aren't strictly dominated
+	public BitSet rows() {
+
+		return (BitSet)rows.clone();
+
+	}
+
+	// Columns (P2 strategies) that aren't strictly dominated
+	public BitSet cols() {
+
+		return (BitSet)cols.clone();
+
+	}
+
+	// Number of row and column passes it took to reach the fixed point
+	public int rounds() {
+
+		return rounds;
+
+	}
+
+	// Number of cell comparisons the elimination made; packed scans count every cell they load, eliminated or not
+	public long comparisons() {
+
+		return comparisons;
+
+	}
+
+	// Returns strictly dominant strategies for both players (P1 strategies in ArrayList.get(0), P2 in ArrayList.get(1))
+	public ArrayList<ArrayList<Integer>> toLists() {
+
+		return toLists(rows, cols);
+
+	}
+
+	// Same as toLists() for survivors that were computed earlier, e.g. read back from LeHer_Store
+	public static ArrayList<ArrayList<Integer>> toLists(BitSet rows, BitSet cols) {
+
+		ArrayList<ArrayList<Integer>> toReturn = new ArrayList<ArrayList<Integer>>();
+		toReturn.add(new ArrayList<Integer>());
+		toReturn.add(new ArrayList<Integer>());
+
+		for(int row = rows.nextSetBit(0); row>=0; row = rows.nextSetBit(row+1))
+			toReturn.get(0).add(row);
+
+		for(int col = cols.nextSetBit(0); col>=0; col = cols.nextSetBit(col+1))
+			toReturn.get(1).add(col);
+
+		return toReturn;
+
+	}
+
+	/*
+	 * Rows only need another pass after columns were removed and the other way around,
+	 * so the loop ends as soon as one side's pass changes nothing for the other.
+	 */
+	private void eliminate() {
+
+		boolean checkRows = true;
+		boolean checkCols = true;
+
+		while(checkRows || checkCols) {
+
+			rounds++;
+
+			if(checkRows) {
+
+				checkRows = false;
+
+				if(pass(rows, cols, rowWitness, true))
+					checkCols = true;
+
+			}
+
+			if(checkCols) {
+
+				checkCols = false;
+
+				if(pass(cols, rows, colWitness, false))
+					checkRows = true;
+
+			}
+
+		}
+
+	}
+
+	// Removes every line that is strictly dominated by another surviving line, returns true if anything was removed
+	private boolean pass(BitSet lines, BitSet against, char[] witness, boolean isRow) {
+
+		boolean removed = false;
+
+		for(int line = lines.nextSetBit(0); line>=0; line = lines.nextSetBit(line+1)) {
+
+			for(int other = lines.nextSetBit(0); other>=0; other = lines.nextSetBit(other+1)) {
+
+				// Stops at the first dominator found
+				if(other!=line && dominated(line, other, against, witness, isRow)) {
+
+					lines.clear(line);
+
+					if(kernel!=null)
+						(isRow ? rowAlive : colAlive)[line] = 0L;
+
+					removed = true;
+					break;
+
+				}
+
+			}
+
+		}
+
+		return removed;
+
+	}
+
+	// Returns true if line is strictly dominated by other over the surviving strategies of the opponent
+	private boolean dominated(int line, int other, BitSet against, char[] witness, boolean isRow) {
+
+		int from = 0;
+
+		if(witness!=null) {
+
+			char known = witness[line*size+other];
+
+			if(known==EQUAL)
+				return false;
+
+			if(known!=UNKNOWN) {
+
+				if(against.get(known-1))
+					return false;
+
+				// Everything before the eliminated witness was already checked to be no better for line
+				from = known;
+
+			}
+
+		}
+
+		if(kernel!=null)
+			return packedDominated(line, other, from, witness, isRow);
+
+		for(int k = against.nextSetBit(from); k>=0; k = against.nextSetBit(k+1)) {
+
+			if(compare(line, other, k, isRow)>0) {
+
+				if(witness!=null)
+					witness[line*size+other] = (char)(k+1);
+
+				return false;
+
+			}
+
+		}
+
+		// line is no better than other anywhere, so it's dominated unless they're equal everywhere
+		for(int k = against.nextSetBit(0); k>=0; k = against.nextSetBit(k+1))
+			if(compare(line, other, k, isRow)<0)
+				return true;
+
+		if(witness!=null)
+			witness[line*size+other] = EQUAL;
+
+		return false;
+
+	}
+
+	// dominated() on the packed lines, scanning from where the last witness was found
+	private boolean packedDominated(int line, int other, int from, char[] witness, boolean isRow) {
+
+		int result = kernel.scan(isRow ? rowLines : colLines, line*size, other*size, isRow ? colAlive : rowAlive, from, size);
+		comparisons += result>=0 ? result-from+1 : size;
+
+		if(result>=0) {
+
+			if(witness!=null)
+				witness[line*size+other] = (char)(result+1);
+
+			return false;
+
+		}
+
+		if(result==LeHer_DominanceKernel.EQUAL) {
+
+			if(witness!=null)
+				witness[line*size+other] = EQUAL;
+
+			return false;
+
+		}
+
+		return true;
+
+	}
+
+	// Column-major copy of a row-major square matrix, negated, copied in TILE x TILE blocks so both sides stay in cache
+	private static long[] transpose(long[] numerators, int size) {
+
+		final int TILE = 64;
+		long[] transposed = new long[numerators.length];
+
+		for(int fromRow = 0; fromRow<size; fromRow += TILE)
+			for(int fromCol = 0; fromCol<size; fromCol += TILE)
+				for(int row = fromRow; row<Math.min(size, fromRow+TILE); row++)
+					for(int col = fromCol; col<Math.min(size, fromCol+TILE); col++)
+						transposed[col*size+row] = -numerators[row*size+col];
+
+		return transposed;
+
+	}
+
+	// Positive when line is better than other against strategy k, from the point of view of the player choosing lines
+	private int compare(int line, int other, int k, boolean isRow) {
+
+		comparisons++;
+		return isRow ? payoff.compare(line, k, other, k) : payoff.compare(k, other, k, line);
+
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * LeHer_DominanceKernel: Compares two packed lines of numerators over the opponent's surviving strategies for LeHer_Dominance.
+ * A line is size consecutive longs of one array, from the matrix's own row-major numerators for rows and from a transposed,
+ * negated copy for columns, so both players want the larger value and both scans walk memory in order.
+ *
+ * The opponent's survivors come as alive, -1 for a surviving strategy and 0 for an eliminated one, which the vector kernel
+ * loads like any other line and turns into a lane mask.
+ *
+ * create() returns LeHer_VectorDominanceKernel when the JVM runs with --add-modules jdk.incubator.vector and the CPU has
+ * at least four long lanes, otherwise this scalar kernel; both return the same result for every scan.
+ */
+
+public class LeHer_DominanceKernel {
+
+	public static final int DOMINATED = -1; // Never better on a survivor and worse on at least one
+	public static final int EQUAL = -2; // Equal on every survivor
+
+	protected LeHer_DominanceKernel() {
+
+	}
+
+	// The vector kernel if it can be used, otherwise the scalar one; -Dleher.kernel=scalar always picks the scalar kernel
+	public static LeHer_DominanceKernel create() {
+
+		if(!System.getProperty("leher.kernel", "").equals("scalar") && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+
+			try {
+
+				LeHer_DominanceKernel vector = (LeHer_DominanceKernel)Class.forName("LeHer_VectorDominanceKernel").getDeclaredConstructor().newInstance();
+
+				if(vector.lanes()>=4)
+					return vector;
+
+			} catch(ReflectiveOperationException | LinkageError e) {
+
+				// Compiled without the vector module, fall through to the scalar kernel
+
+			}
+
+		}
+
+		return new LeHer_DominanceKernel();
+
+	}
+
+	// Strategies compared per step, 1 for the scalar kernel
+	public int lanes() {
+
+		return 1;
+
+	}
+
+	/*
+	 * Compares the line at data[line..line+length) with the one at data[other..other+length) where alive is -1.
+	 * Returns the first k >= from where line is larger, which proves it isn't dominated, otherwise DOMINATED or EQUAL.
+	 * Entries before from were already found to be no larger, so they're only looked at for being smaller.
+	 */
+	public final int scan(long[] data, int line, int other, long[] alive, int from, int length) {
+
+		int result = range(data, line, other, alive, from, length);
+
+		if(result==EQUAL && from>0)
+			result = range(data, line, other, alive, 0, from);
+
+		return result;
+
+	}
+
+	// First larger entry in [from, to), or DOMINATED or EQUAL over that range; also the vector kernel's tail
+	protected int range(long[] data, int line, int other, long[] alive, int from, int to) {
+
+		boolean smaller = false;
+
+		for(int k = from; k<to; k++) {
+
+			if(alive[k]==0)
+				continue;
+
+			long a = data[line+k];
+			long b = data[other+k];
+
+			if(a>b)
+				return k;
+
+			smaller |= a<b;
+
+		}
+
+		return smaller ? DOMINATED : EQUAL;
+
+	}
+
+}
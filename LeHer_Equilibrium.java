@@ -0,0 +1,450 @@
+import java.math.*;
+import java.util.*;
+
+/*
+ * LeHer_Equilibrium: Zero-sum equilibrium of the (usually reduced) threshold matrix, P1 maximizing its win probability.
+ * solve() first looks for a pure saddle point in O(n^2). Otherwise small matrices are solved exactly with a simplex that
+ * pivots on integers (every entry stays an integer over one shared determinant, so no rational arithmetic is needed),
+ * and large ones with fictitious play, which stops once the gap between the two players' guarantees is small enough.
+ */
+
+public class LeHer_Equilibrium {
+
+	// Exact simplex is used as long as neither player has more strategies than this
+	public static final int EXACT_LIMIT = 100;
+	public static final double DEFAULT_TOLERANCE = 1e-9;
+	public static final int DEFAULT_ITERATIONS = 10_000_000;
+
+	public enum Method { SADDLE_POINT, SIMPLEX, FICTITIOUS_PLAY }
+
+	// P1's win probability in a cell, for matrices that aren't exact
+	public interface Values {
+
+		double value(int row, int col);
+
+	}
+
+	private final Method method;
+	private final int[] rows;
+	private final int[] cols;
+	private final double[] p1Mix;
+	private final double[] p2Mix;
+	private final double value;
+	private final double gap; // Upper bound minus lower bound on the value, 0 for exact methods
+	private final BigInteger valueNumerator; // Exact value, null for fictitious play
+	private final BigInteger valueDenominator;
+
+	private LeHer_Equilibrium(Method method, int[] rows, int[] cols, double[] p1Mix, double[] p2Mix, double value, double gap, BigInteger valueNumerator, BigInteger valueDenominator) {
+
+		this.method = method;
+		this.rows = rows;
+		this.cols = cols;
+		this.p1Mix = p1Mix;
+		this.p2Mix = p2Mix;
+		this.value = value;
+		this.gap = gap;
+
+		if(valueNumerator!=null) {
+
+			// Kept in simplest form
+			BigInteger gcf = valueNumerator.gcd(valueDenominator);
+
+			if(valueDenominator.signum()<0)
+				gcf = gcf.negate();
+
+			valueNumerator = valueNumerator.divide(gcf);
+			valueDenominator = valueDenominator.divide(gcf);
+
+		}
+
+		this.valueNumerator = valueNumerator;
+		this.valueDenominator = valueDenominator;
+
+	}
+
+	// Picks the fastest exact method that applies, falling back to fictitious play above EXACT_LIMIT
+	public static LeHer_Equilibrium solve(LeHer_ExactMatrix matrix, List<Integer> rows, List<Integer> cols) {
+
+		int[] rowArray = toArray(rows);
+		int[] colArray = toArray(cols);
+		int[] saddle = saddlePoint(matrix, rowArray, colArray);
+
+		if(saddle!=null) {
+
+			int row = rowArray[saddle[0]];
+			int col = colArray[saddle[1]];
+			return pure(rowArray, colArray, saddle, matrix.toDecimal(row, col), matrix.bigNumerator(row, col), matrix.bigDenominator());
+
+		}
+
+		if(rows.size()<=EXACT_LIMIT && cols.size()<=EXACT_LIMIT)
+			return simplex(matrix, rows, cols);
+
+		return fictitiousPlay((row, col) -> matrix.toDecimal(row, col), rows, cols, DEFAULT_TOLERANCE, DEFAULT_ITERATIONS);
+
+	}
+
+	// Same as solve(LeHer_ExactMatrix, ...) for estimated matrices, which never use the exact simplex
+	public static LeHer_Equilibrium solve(Values values, List<Integer> rows, List<Integer> cols) {
+
+		int[] rowArray = toArray(rows);
+		int[] colArray = toArray(cols);
+		int[] saddle = saddlePoint((row, col, otherRow, otherCol) -> Double.compare(values.value(row, col), values.value(otherRow, otherCol)), rowArray, colArray);
+
+		if(saddle!=null)
+			return pure(rowArray, colArray, saddle, values.value(rowArray[saddle[0]], colArray[saddle[1]]), null, null);
+
+		return fictitiousPlay(values, rows, cols, DEFAULT_TOLERANCE, DEFAULT_ITERATIONS);
+
+	}
+
+	/*
+	 * A cell that is the lowest in its row and the highest in its column is a pure equilibrium.
+	 * The best row minimum equals the best column maximum exactly when such a cell exists, which takes one O(n^2) pass.
+	 * Returns the positions of the saddle point in rows and cols, or null if there is none.
+	 */
+	private static int[] saddlePoint(LeHer_Dominance.Payoff payoff, int[] rows, int[] cols) {
+
+		int bestRow = -1;
+		int bestRowMin = -1; // Column of the minimum in bestRow
+
+		for(int i = 0; i<rows.length; i++) {
+
+			int min = 0;
+
+			for(int j = 1; j<cols.length; j++)
+				if(payoff.compare(rows[i], cols[j], rows[i], cols[min])<0)
+					min = j;
+
+			if(bestRow<0 || payoff.compare(rows[i], cols[min], rows[bestRow], cols[bestRowMin])>0) {
+
+				bestRow = i;
+				bestRowMin = min;
+
+			}
+
+		}
+
+		int bestCol = -1;
+		int bestColMax = -1; // Row of the maximum in bestCol
+
+		for(int j = 0; j<cols.length; j++) {
+
+			int max = 0;
+
+			for(int i = 1; i<rows.length; i++)
+				if(payoff.compare(rows[i], cols[j], rows[max], cols[j])>0)
+					max = i;
+
+			if(bestCol<0 || payoff.compare(rows[max], cols[j], rows[bestColMax], cols[bestCol])<0) {
+
+				bestCol = j;
+				bestColMax = max;
+
+			}
+
+		}
+
+		if(payoff.compare(rows[bestRow], cols[bestRowMin], rows[bestColMax], cols[bestCol])!=0)
+			return null;
+
+		return new int[] {bestRow, bestCol};
+
+	}
+
+	private static LeHer_Equilibrium pure(int[] rows, int[] cols, int[] saddle, double value, BigInteger numerator, BigInteger denominator) {
+
+		double[] p1Mix = new double[rows.length];
+		double[] p2Mix = new double[cols.length];
+		p1Mix[saddle[0]] = 1.0;
+		p2Mix[saddle[1]] = 1.0;
+		return new LeHer_Equilibrium(Method.SADDLE_POINT, rows, cols, p1Mix, p2Mix, value, 0.0, numerator, denominator);
+
+	}
+
+	/*
+	 * Shifts the numerators so every payoff is positive, then solves max sum(w) subject to B w <= 1, w >= 0.
+	 * At the optimum sum(w) = 1/value, w*value is P2's mix, and the duals of the constraints times value are P1's mix.
+	 * Integer pivoting keeps the tableau as integers T over the last pivot d: every entry becomes (T*p - T[i][c]*T[r][j])/d,
+	 * which always divides exactly. Bland's rule picks the pivots, so the method can't cycle.
+	 */
+	public static LeHer_Equilibrium simplex(LeHer_ExactMatrix matrix, List<Integer> rowList, List<Integer> colList) {
+
+		int[] rows = toArray(rowList);
+		int[] cols = toArray(colList);
+		final int m = rows.length;
+		final int k = cols.length;
+		final int rhs = k+m;
+		BigInteger min = null;
+
+		for(int row: rows)
+			for(int col: cols)
+				if(min==null || matrix.bigNumerator(row, col).compareTo(min)<0)
+					min = matrix.bigNumerator(row, col);
+
+		BigInteger shift = BigInteger.ONE.subtract(min.min(BigInteger.ZERO));
+		BigInteger[][] tableau = new BigInteger[m+1][k+m+1];
+		int[] basis = new int[m];
+
+		for(int i = 0; i<=m; i++)
+			Arrays.fill(tableau[i], BigInteger.ZERO);
+
+		for(int i = 0; i<m; i++) {
+
+			for(int j = 0; j<k; j++)
+				tableau[i][j] = matrix.bigNumerator(rows[i], cols[j]).add(shift);
+
+			tableau[i][k+i] = BigInteger.ONE;
+			tableau[i][rhs] = BigInteger.ONE;
+			basis[i] = k+i;
+
+		}
+
+		for(int j = 0; j<k; j++)
+			tableau[m][j] = BigInteger.ONE.negate();
+
+		BigInteger previous = BigInteger.ONE;
+
+		while(true) {
+
+			int enter = -1;
+
+			for(int j = 0; j<rhs && enter<0; j++)
+				if(tableau[m][j].signum()<0)
+					enter = j;
+
+			if(enter<0)
+				break;
+
+			int leave = -1;
+
+			for(int i = 0; i<m; i++) {
+
+				if(tableau[i][enter].signum()<=0)
+					continue;
+
+				if(leave<0) {
+
+					leave = i;
+					continue;
+
+				}
+
+				int ratio = tableau[i][rhs].multiply(tableau[leave][enter]).compareTo(tableau[leave][rhs].multiply(tableau[i][enter]));
+
+				if(ratio<0 || (ratio==0 && basis[i]<basis[leave]))
+					leave = i;
+
+			}
+
+			BigInteger pivot = tableau[leave][enter];
+
+			for(int i = 0; i<=m; i++) {
+
+				if(i==leave)
+					continue;
+
+				BigInteger factor = tableau[i][enter];
+
+				for(int j = 0; j<=rhs; j++)
+					tableau[i][j] = tableau[i][j].multiply(pivot).subtract(factor.multiply(tableau[leave][j])).divide(previous);
+
+			}
+
+			basis[leave] = enter;
+			previous = pivot;
+
+		}
+
+		// sum(w) = tableau[m][rhs]/previous, so the shifted value is previous/tableau[m][rhs]
+		BigInteger total = tableau[m][rhs];
+		double[] p1Mix = new double[m];
+		double[] p2Mix = new double[k];
+
+		for(int i = 0; i<m; i++)
+			p1Mix[i] = new BigDecimal(tableau[m][k+i]).divide(new BigDecimal(total), MathContext.DECIMAL64).doubleValue();
+
+		for(int i = 0; i<m; i++)
+			if(basis[i]<k)
+				p2Mix[basis[i]] = new BigDecimal(tableau[i][rhs]).divide(new BigDecimal(total), MathContext.DECIMAL64).doubleValue();
+
+		BigInteger numerator = previous.subtract(shift.multiply(total));
+		BigInteger denominator = total.multiply(matrix.bigDenominator());
+		double value = new BigDecimal(numerator).divide(new BigDecimal(denominator), MathContext.DECIMAL64).doubleValue();
+		return new LeHer_Equilibrium(Method.SIMPLEX, rows, cols, p1Mix, p2Mix, value, 0.0, numerator, denominator);
+
+	}
+
+	/*
+	 * Each round both players best-respond to the other's empirical mix. The empirical mix of P1 guarantees at least
+	 * the lowest column total over rounds, and P2's concedes at most the highest row total over rounds, so the value
+	 * is always bracketed and play stops once the bracket is narrower than tolerance. Every round costs O(m + n).
+	 */
+	public static LeHer_Equilibrium fictitiousPlay(Values values, List<Integer> rowList, List<Integer> colList, double tolerance, int maxIterations) {
+
+		int[] rows = toArray(rowList);
+		int[] cols = toArray(colList);
+		final int m = rows.length;
+		final int k = cols.length;
+		double[][] payoff = new double[m][k];
+
+		for(int i = 0; i<m; i++)
+			for(int j = 0; j<k; j++)
+				payoff[i][j] = values.value(rows[i], cols[j]);
+
+		double[] rowTotals = new double[m]; // Payoff of each row against P2's plays so far
+		double[] colTotals = new double[k]; // Payoff of each column against P1's plays so far
+		long[] rowCounts = new long[m];
+		long[] colCounts = new long[k];
+		double lower = Double.NEGATIVE_INFINITY;
+		double upper = Double.POSITIVE_INFINITY;
+		int iterations = 0;
+
+		while(iterations<maxIterations && upper-lower>tolerance) {
+
+			int bestRow = 0;
+			int bestCol = 0;
+
+			for(int i = 1; i<m; i++)
+				if(rowTotals[i]>rowTotals[bestRow])
+					bestRow = i;
+
+			for(int j = 1; j<k; j++)
+				if(colTotals[j]<colTotals[bestCol])
+					bestCol = j;
+
+			rowCounts[bestRow]++;
+			colCounts[bestCol]++;
+			iterations++;
+			double rowMax = Double.NEGATIVE_INFINITY;
+			double colMin = Double.POSITIVE_INFINITY;
+
+			for(int i = 0; i<m; i++) {
+
+				rowTotals[i] += payoff[i][bestCol];
+				rowMax = Math.max(rowMax, rowTotals[i]);
+
+			}
+
+			for(int j = 0; j<k; j++) {
+
+				colTotals[j] += payoff[bestRow][j];
+				colMin = Math.min(colMin, colTotals[j]);
+
+			}
+
+			lower = Math.max(lower, colMin/iterations);
+			upper = Math.min(upper, rowMax/iterations);
+
+		}
+
+		double[] p1Mix = new double[m];
+		double[] p2Mix = new double[k];
+
+		for(int i = 0; i<m; i++)
+			p1Mix[i] = ((double)rowCounts[i])/iterations;
+
+		for(int j = 0; j<k; j++)
+			p2Mix[j] = ((double)colCounts[j])/iterations;
+
+		return new LeHer_Equilibrium(Method.FICTITIOUS_PLAY, rows, cols, p1Mix, p2Mix, (lower+upper)/2, Math.max(0.0, upper-lower), null, null);
+
+	}
+
+	private static int[] toArray(List<Integer> list) {
+
+		int[] toReturn = new int[list.size()];
+
+		for(int i = 0; i<toReturn.length; i++)
+			toReturn[i] = list.get(i);
+
+		return toReturn;
+
+	}
+
+	public Method getMethod() {
+
+		return method;
+
+	}
+
+	// P1's win probability when both players play their equilibrium mixes
+	public double getValue() {
+
+		return value;
+
+	}
+
+	// Width of the bracket around the value; 0 unless fictitious play stopped early
+	public double getGap() {
+
+		return gap;
+
+	}
+
+	// Exact value in simplest form, or null if it was only approximated
+	public BigInteger getValueNumerator() {
+
+		return valueNumerator;
+
+	}
+
+	public BigInteger getValueDenominator() {
+
+		return valueDenominator;
+
+	}
+
+	public int[] getRows() {
+
+		return rows.clone();
+
+	}
+
+	public int[] getCols() {
+
+		return cols.clone();
+
+	}
+
+	// Probability of each of getRows() in P1's optimal mix
+	public double[] getP1Mix() {
+
+		return p1Mix.clone();
+
+	}
+
+	// Probability of each of getCols() in P2's optimal mix
+	public double[] getP2Mix() {
+
+		return p2Mix.clone();
+
+	}
+
+	public String toString() {
+
+		String toReturn = "Game Value: " + value;
+
+		if(valueNumerator!=null)
+			toReturn += " (" + valueNumerator + "/" + valueDenominator + ")";
+
+		else
+			toReturn += " (+/- " + gap/2 + ")";
+
+		toReturn += "\nP1 Mixed Strategy: ";
+
+		for(int i = 0; i<rows.length; i++)
+			if(p1Mix[i]>0)
+				toReturn += " " + rows[i] + "=" + p1Mix[i];
+
+		toReturn += "\nP2 Mixed Strategy: ";
+
+		for(int j = 0; j<cols.length; j++)
+			if(p2Mix[j]>0)
+				toReturn += " " + cols[j] + "=" + p2Mix[j];
+
+		return toReturn + "\n";
+
+	}
+
+}
@@ -0,0 +1,333 @@
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * LeHer_Exact: Closed form of the O(n) per cell sums LeHer_Simplified used to fill its matrix with, finding the numerator of any cell in O(1).
+ * Every one of those sums adds up a polynomial of degree two or less in P1Card over a range that only depends
+ * on maxValP1 and maxValP2, so prefix sums of P1Card and P1Card^2 per card value are enough to evaluate each of them.
+ *
+ * The long methods throw ArithmeticException instead of silently overflowing. Callers then fall back to the BigInteger
+ * methods for just the cells that need them, so small decks never pay for BigInteger.
+ */
+
+public class LeHer_Exact {
+
+	public static final int VERSION = 1; // Bump when numerator() changes, so LeHer_Store drops old results
+
+	private static final BigInteger TWO = BigInteger.valueOf(2);
+	private static final BigInteger SIX = BigInteger.valueOf(6);
+
+	/*
+	 * Prefix sums of P1Card and P1Card^2 over 1..maxCards. They don't depend on cardSets, or on cards beyond their length,
+	 * so one table can be shared by every configuration with cards <= maxCards, as LeHer_Sweep does.
+	 */
+	public static final class RankSums {
+
+		private final int maxCards;
+		private final long[] sum1; // sum1[k] = 1 + 2 + ... + k, null if the sums don't fit in a long
+		private final long[] sum2; // sum2[k] = 1^2 + 2^2 + ... + k^2, null if the sums don't fit in a long
+
+		public RankSums(int maxCards) {
+
+			this.maxCards = maxCards;
+			long[] sum1 = new long[maxCards+1];
+			long[] sum2 = new long[maxCards+1];
+
+			try {
+
+				for(int k = 1; k<=maxCards; k++) {
+
+					sum1[k] = Math.addExact(sum1[k-1], k);
+					sum2[k] = Math.addExact(sum2[k-1], (long)k*k);
+
+				}
+
+			} catch(ArithmeticException e) {
+
+				sum1 = null;
+				sum2 = null;
+
+			}
+
+			this.sum1 = sum1;
+			this.sum2 = sum2;
+
+		}
+
+		public int maxCards() {
+
+			return maxCards;
+
+		}
+
+	}
+
+	private final int cardSets;
+	private final int cards;
+	private final long[] sum1; // Shared with RankSums, never written
+	private final long[] sum2;
+
+	// O(n) precomputation, after which every cell costs O(1)
+	public LeHer_Exact(int cardSets, int cards) {
+
+		this(cardSets, cards, new RankSums(cards));
+
+	}
+
+	// Reuses sums built for at least cards values instead of building them again
+	public LeHer_Exact(int cardSets, int cards, RankSums sums) {
+
+		if(sums.maxCards<cards)
+			throw new IllegalArgumentException("RankSums only cover " + sums.maxCards + " cards");
+
+		this.cardSets = cardSets;
+		this.cards = cards;
+		sum1 = sums.sum1;
+		sum2 = sums.sum2;
+
+	}
+
+	public int getCardSets() {
+
+		return cardSets;
+
+	}
+
+	public int getCards() {
+
+		return cards;
+
+	}
+
+	// Shared denominator of every cell: numCards * (numCards-1) * (numCards-2)
+	public long denominator() {
+
+		final long numCards = (long)cardSets*cards;
+		return mul(mul(numCards, numCards-1), numCards-2);
+
+	}
+
+	public BigInteger bigDenominator() {
+
+		final BigInteger numCards = BigInteger.valueOf((long)cardSets*cards);
+		return numCards.multiply(numCards.subtract(BigInteger.ONE)).multiply(numCards.subtract(TWO));
+
+	}
+
+	// Fills a matrix with every cell in O(n^2) total; only cells whose long sums overflow are recomputed with BigInteger
+	public LeHer_Matrix solveMatrix() {
+
+		LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.MATRIX, "LeHer_Exact", cards+1);
+		LeHer_Matrix matrix = new LeHer_Matrix(cards+1, bigDenominator());
+
+		for(int row = 0; row<=cards; row++) {
+
+			for(int col = 0; col<=cards; col++) {
+
+				try {
+
+					matrix.set(row, col, numerator(row, col));
+
+				} catch(ArithmeticException e) {
+
+					matrix.set(row, col, bigNumerator(row, col));
+
+				}
+
+			}
+
+		}
+
+		timer.matrix((long)(cards+1)*(cards+1), 0L);
+		return matrix;
+
+	}
+
+	// Fills an off-heap matrix tile by tile on pool, backed by file or by direct buffers if file is null
+	public LeHer_OffHeapMatrix solveMatrix(Path file, ForkJoinPool pool) {
+
+		return new LeHer_OffHeapMatrix(cards+1, bigDenominator(), file).fill(this, pool);
+
+	}
+
+	// P1's win probability for maxValP1 and maxValP2 times the denominator, as LeHer's O(n^2) loops count it
+	public long numerator(int maxValP1, int maxValP2) {
+
+		if(sum1==null)
+			throw new ArithmeticException("long overflow");
+
+		final long c = cardSets;
+		final long n = cards;
+		final long m2 = maxValP2;
+		final long numCards = c*n;
+		long numerator = 0L;
+
+		// When both players swap their cards: P1Card in [1, min(maxValP1, cards-2)]
+		int to = Math.min(maxValP1, cards-2);
+
+		if(to>=1) {
+
+			long pairs = sub(sub(mul(to, mul(n, n-1)), sum2[to]), sum1[to]); // Sum of (cards-P1Card-1)*(P1Card+cards), always even
+			numerator = mul(mul(c, c), sub(add(mul(c, pairs/2), sum1[to]), mul(to, n-1)));
+
+		}
+
+		long sum = 0L;
+
+		// P1Card < P2Card: P1Card in [maxValP1+1, maxValP2-1]
+		int from = maxValP1+1;
+		to = maxValP2-1;
+		sum = add(sum, mul(mul(c, c), sub(sub(mul(m2+1, sum1(from, to)), sum2(from, to)), mul(m2, count(from, to)))));
+
+		// P1Card == P2Card: P1Card in [maxValP1+1, min(cards, maxValP2)]
+		to = Math.min(cards, maxValP2);
+		sum = add(sum, mul(mul(c, c-1), sum1(from, to)-count(from, to)));
+
+		// P1Card > P2Card && P1Card!=cards, where min(maxValP2, P1Card-1) is P1Card-1: P1Card in [maxValP1+1, min(cards-1, maxValP2+1)]
+		to = Math.min(cards-1, maxValP2+1);
+		sum = add(sum, mul(c, add(sub(mul(c, sum2(from, to)), mul(c+1, sum1(from, to))), count(from, to))));
+
+		// P1Card > P2Card && P1Card!=cards, where min(maxValP2, P1Card-1) is maxValP2: P1Card in [max(maxValP1+1, maxValP2+2), cards-1]
+		from = Math.max(maxValP1+1, maxValP2+2);
+		to = cards-1;
+		sum = add(sum, mul(mul(c, m2), sub(mul(c, sum1(from, to)), count(from, to))));
+
+		// P1Card > P2Card && P1Card==cards
+		if(maxValP1<cards)
+			sum = add(sum, mul(mul(Math.min(m2, n-1), c), mul(c, n)-2));
+
+		numerator = add(numerator, mul(sum, c));
+
+		// When neither players swap: P1Card - maxValP2 - 1 summed over P1Card in [max(maxValP1+1, maxValP2+2), cards]
+		to = cards;
+		sum = sub(sum1(from, to), mul(m2+1, count(from, to)));
+		numerator = add(numerator, mul(mul(sum, mul(c, c)), numCards-2));
+
+		return numerator;
+
+	}
+
+	// numerator() evaluated with BigInteger, for the cells whose long evaluation overflows
+	public BigInteger bigNumerator(int maxValP1, int maxValP2) {
+
+		final BigInteger c = BigInteger.valueOf(cardSets);
+		final BigInteger n = BigInteger.valueOf(cards);
+		final BigInteger m2 = BigInteger.valueOf(maxValP2);
+		final BigInteger cc = c.multiply(c);
+		BigInteger numerator = BigInteger.ZERO;
+
+		// When both players swap their cards
+		int to = Math.min(maxValP1, cards-2);
+
+		if(to>=1) {
+
+			BigInteger pairs = BigInteger.valueOf(to).multiply(n).multiply(n.subtract(BigInteger.ONE)).subtract(bigSum2(1, to)).subtract(bigSum1(1, to));
+			numerator = cc.multiply(c.multiply(pairs.shiftRight(1)).add(bigSum1(1, to)).subtract(BigInteger.valueOf(to).multiply(n.subtract(BigInteger.ONE))));
+
+		}
+
+		// P1Card < P2Card
+		int from = maxValP1+1;
+		to = maxValP2-1;
+		BigInteger sum = cc.multiply(m2.add(BigInteger.ONE).multiply(bigSum1(from, to)).subtract(bigSum2(from, to)).subtract(m2.multiply(bigCount(from, to))));
+
+		// P1Card == P2Card
+		to = Math.min(cards, maxValP2);
+		sum = sum.add(c.multiply(c.subtract(BigInteger.ONE)).multiply(bigSum1(from, to).subtract(bigCount(from, to))));
+
+		// P1Card > P2Card && P1Card!=cards, P1Card-1 <= maxValP2
+		to = Math.min(cards-1, maxValP2+1);
+		sum = sum.add(c.multiply(c.multiply(bigSum2(from, to)).subtract(c.add(BigInteger.ONE).multiply(bigSum1(from, to))).add(bigCount(from, to))));
+
+		// P1Card > P2Card && P1Card!=cards, P1Card-1 > maxValP2
+		from = Math.max(maxValP1+1, maxValP2+2);
+		to = cards-1;
+		sum = sum.add(c.multiply(m2).multiply(c.multiply(bigSum1(from, to)).subtract(bigCount(from, to))));
+
+		// P1Card > P2Card && P1Card==cards
+		if(maxValP1<cards)
+			sum = sum.add(BigInteger.valueOf(Math.min(maxValP2, cards-1)).multiply(c).multiply(c.multiply(n).subtract(TWO)));
+
+		numerator = numerator.add(sum.multiply(c));
+
+		// When neither players swap
+		to = cards;
+		sum = bigSum1(from, to).subtract(m2.add(BigInteger.ONE).multiply(bigCount(from, to)));
+		numerator = numerator.add(sum.multiply(cc).multiply(c.multiply(n).subtract(TWO)));
+
+		return numerator;
+
+	}
+
+	// Number of card values in [from, to]
+	private long count(int from, int to) {
+
+		return to<from ? 0L : to-from+1;
+
+	}
+
+	// Sum of P1Card over [from, to]
+	private long sum1(int from, int to) {
+
+		return to<from ? 0L : sum1[to]-sum1[from-1];
+
+	}
+
+	// Sum of P1Card^2 over [from, to]
+	private long sum2(int from, int to) {
+
+		return to<from ? 0L : sum2[to]-sum2[from-1];
+
+	}
+
+	private static BigInteger bigCount(int from, int to) {
+
+		return BigInteger.valueOf(to<from ? 0L : (long)to-from+1);
+
+	}
+
+	// Closed forms k(k+1)/2 and k(k+1)(2k+1)/6, so the BigInteger path needs no tables
+	private static BigInteger bigSum1(int from, int to) {
+
+		return to<from ? BigInteger.ZERO : bigSum1(to).subtract(bigSum1(from-1));
+
+	}
+
+	private static BigInteger bigSum1(long k) {
+
+		return BigInteger.valueOf(k).multiply(BigInteger.valueOf(k+1)).shiftRight(1);
+
+	}
+
+	private static BigInteger bigSum2(int from, int to) {
+
+		return to<from ? BigInteger.ZERO : bigSum2(to).subtract(bigSum2(from-1));
+
+	}
+
+	private static BigInteger bigSum2(long k) {
+
+		return BigInteger.valueOf(k).multiply(BigInteger.valueOf(k+1)).multiply(BigInteger.valueOf(2*k+1)).divide(SIX);
+
+	}
+
+	private static long add(long a, long b) {
+
+		return Math.addExact(a, b);
+
+	}
+
+	private static long sub(long a, long b) {
+
+		return Math.subtractExact(a, b);
+
+	}
+
+	private static long mul(long a, long b) {
+
+		return Math.multiplyExact(a, b);
+
+	}
+
+}
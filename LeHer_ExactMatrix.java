@@ -0,0 +1,194 @@
+import java.math.*;
+
+/*
+ * LeHer_ExactMatrix: Exact win probabilities that all share one denominator, whatever holds their numerators.
+ * LeHer_Matrix keeps them in a long[], LeHer_OffHeapMatrix outside the heap and LeHer_MatrixView evaluates them on demand;
+ * each only says how to read one numerator, and the denominator and everything derived from the two lives here once.
+ *
+ * numerator() throws ArithmeticException for a cell that doesn't fit in a long, and the methods below then go through
+ * bigNumerator(). Every numerator is at most the denominator, so that only happens when the denominator doesn't fit either.
+ * It is also the LeHer_Export.Cells that prints multiple(), so any of them can be exported or solved by LeHer_Equilibrium.
+ */
+
+public abstract class LeHer_ExactMatrix implements LeHer_Dominance.Payoff, LeHer_Export.Cells {
+
+	protected final int size;
+	private final long denominator; // Only valid if bigDenominator is null
+	private final BigInteger bigDenominator;
+	private final long multiple; // denominator/8, the scale used by multiple()
+	private final BigInteger bigMultiple;
+
+	protected LeHer_ExactMatrix(int size, long denominator) {
+
+		this.size = size;
+		this.denominator = denominator;
+		bigDenominator = null;
+		multiple = denominator/8;
+		bigMultiple = BigInteger.valueOf(multiple);
+
+	}
+
+	protected LeHer_ExactMatrix(int size, BigInteger denominator) {
+
+		this.size = size;
+
+		if(denominator.bitLength()<Long.SIZE) {
+
+			this.denominator = denominator.longValue();
+			bigDenominator = null;
+
+		}
+
+		else {
+
+			this.denominator = 0L;
+			bigDenominator = denominator;
+
+		}
+
+		bigMultiple = denominator.shiftRight(3);
+		multiple = bigDenominator==null ? bigMultiple.longValue() : 0L;
+
+	}
+
+	// Throws ArithmeticException if the numerator doesn't fit in a long
+	public abstract long numerator(int row, int col);
+
+	public abstract BigInteger bigNumerator(int row, int col);
+
+	// Number of rows, which is also the number of columns
+	public int size() {
+
+		return size;
+
+	}
+
+	// Throws ArithmeticException if the denominator doesn't fit in a long
+	public long denominator() {
+
+		if(bigDenominator!=null)
+			throw new ArithmeticException("long overflow");
+
+		return denominator;
+
+	}
+
+	public BigInteger bigDenominator() {
+
+		return bigDenominator!=null ? bigDenominator : BigInteger.valueOf(denominator);
+
+	}
+
+	// True unless the denominator needs a BigInteger, in which case every cell goes through bigNumerator()
+	protected final boolean denominatorFits() {
+
+		return bigDenominator==null;
+
+	}
+
+	// Compares two cells; with a shared denominator that only means comparing their numerators
+	public int compare(int row, int col, int otherRow, int otherCol) {
+
+		try {
+
+			return Long.compare(numerator(row, col), numerator(otherRow, otherCol));
+
+		} catch(ArithmeticException e) {
+
+			return bigNumerator(row, col).compareTo(bigNumerator(otherRow, otherCol));
+
+		}
+
+	}
+
+	// Returns the cell in decimal/double form.
+	public double toDecimal(int row, int col) {
+
+		if(bigDenominator==null)
+			return ((double)numerator(row, col))/denominator;
+
+		return new BigDecimal(bigNumerator(row, col)).divide(new BigDecimal(bigDenominator), MathContext.DECIMAL64).doubleValue();
+
+	}
+
+	/*
+	 * Returns the cell multiplied by denominator/8, then does 2(num*multiple) - multiple, the value the matrices print.
+	 * Since num <= denominator = 8*multiple + r, floor(num*multiple/denominator) is floor(num/8), less one when
+	 * (num%8)*denominator < num*r, so no product of two large numbers is needed.
+	 * Throws ArithmeticException if the result doesn't fit in a long, use bigMultiple() then.
+	 */
+	public long multiple(int row, int col) {
+
+		if(bigDenominator!=null)
+			return bigMultiple(row, col).longValueExact();
+
+		try {
+
+			return multiple(numerator(row, col), denominator, multiple);
+
+		} catch(ArithmeticException e) {
+
+			// Only for denominators close to overflowing
+			return bigMultiple(row, col).longValueExact();
+
+		}
+
+	}
+
+	// multiple() of one numerator over a long denominator
+	static long multiple(long num, long denominator, long multiple) {
+
+		long scaled = num/8;
+
+		if(Math.multiplyExact(num%8, denominator)<Math.multiplyExact(num, denominator%8))
+			scaled--;
+
+		return scaled*2-multiple;
+
+	}
+
+	// multiple() computed with BigInteger
+	public BigInteger bigMultiple(int row, int col) {
+
+		return bigNumerator(row, col).multiply(bigMultiple).divide(bigDenominator()).shiftLeft(1).subtract(bigMultiple);
+
+	}
+
+	// Appends multiple() to out without creating a String, going through BigInteger only when the long version would overflow
+	public void appendMultiple(StringBuilder out, int row, int col) {
+
+		try {
+
+			out.append(multiple(row, col));
+
+		} catch(ArithmeticException e) {
+
+			out.append(bigMultiple(row, col));
+
+		}
+
+	}
+
+	// multiple() as text, going through BigInteger only when the long version would overflow
+	public String multipleString(int row, int col) {
+
+		try {
+
+			return Long.toString(multiple(row, col));
+
+		} catch(ArithmeticException e) {
+
+			return bigMultiple(row, col).toString();
+
+		}
+
+	}
+
+	// The LeHer_Export.Cells view of the matrix, which prints appendMultiple()
+	public void append(StringBuilder out, int row, int col) {
+
+		appendMultiple(out, row, col);
+
+	}
+
+}
@@ -0,0 +1,281 @@
+import java.io.*;
+import java.util.*;
+
+/*
+ * LeHer_Export: Writes matrices row by row to a Writer instead of building them up as one String.
+ * Every row is formatted into one reused StringBuilder and copied out through one reused char[], so the cost is
+ * linear in the size of the output and the text of the whole matrix is never held in memory.
+ */
+
+public class LeHer_Export {
+
+	/*
+	 * READABLE is the tab-aligned layout of fullMatrix()/domMatrix(), EXCEL the space-delimited layout of
+	 * fullMatrixExcel()/domMatrixExcel(), CSV and TSV are plain tables with a header row and a header column.
+	 */
+	public enum Format {
+
+		READABLE(".txt"), EXCEL(".txt"), CSV(".csv"), TSV(".tsv");
+
+		private final String extension;
+
+		Format(String extension) {
+
+			this.extension = extension;
+
+		}
+
+		public String extension() {
+
+			return extension;
+
+		}
+
+	}
+
+	// Appends the value printed for one cell; every LeHer_ExactMatrix is one, printing its multiple()
+	public interface Cells {
+
+		void append(StringBuilder out, int row, int col);
+
+	}
+
+	public static final int BUFFER_SIZE = 1<<16;
+
+	private final Writer out;
+	private final Format format;
+	private final Cells cells;
+	private final StringBuilder line = new StringBuilder();
+	private char[] chars = new char[256];
+
+	private LeHer_Export(Writer out, Format format, Cells cells) {
+
+		this.out = out;
+		this.format = format;
+		this.cells = cells;
+
+	}
+
+	// Opens a buffered writer for fname, as every export should go through one
+	public static Writer open(String fname) throws IOException {
+
+		return new BufferedWriter(new FileWriter(new File(fname)), BUFFER_SIZE);
+
+	}
+
+	// Streams the given rows and columns of the matrix to out
+	public static void write(Writer out, Format format, Cells cells, int[] rows, int[] cols) throws IOException {
+
+		write(out, format, cells, rows, cols, rows.length+2);
+
+	}
+
+	// Same as write() with dashes groups of 8 dashes under a READABLE header, which LeHer prints one fewer of than the others
+	public static void write(Writer out, Format format, Cells cells, int[] rows, int[] cols, int dashes) throws IOException {
+
+		LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.EXPORT, "LeHer_Export", rows.length);
+		LeHer_Export export = new LeHer_Export(out, format, cells);
+		export.header(dashes, cols);
+
+		for(int row: rows)
+			export.row(row, cols);
+
+		export.footer();
+		timer.export((long)rows.length*cols.length);
+
+	}
+
+	/*
+	 * Streams the full size x size matrix to full and the dominant rows and columns to dominant in one pass over the rows.
+	 * domRows must be in increasing order, which is the order strictlyDominantStrategy() returns them in.
+	 */
+	public static void write(Writer full, Writer dominant, Format format, Cells cells, int size, int[] domRows, int[] domCols) throws IOException {
+
+		LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.EXPORT, "LeHer_Export", size);
+		int[] cols = indices(size);
+		LeHer_Export fullExport = new LeHer_Export(full, format, cells);
+		LeHer_Export domExport = new LeHer_Export(dominant, format, cells);
+		fullExport.header(size+2, cols);
+		domExport.header(domRows.length+2, domCols);
+		int next = 0; // Position of the next dominant row
+
+		for(int row = 0; row<size; row++) {
+
+			fullExport.row(row, cols);
+
+			if(next<domRows.length && domRows[next]==row) {
+
+				domExport.row(row, domCols);
+				next++;
+
+			}
+
+		}
+
+		if(next!=domRows.length)
+			throw new IllegalArgumentException("Dominant rows must be increasing and less than " + size);
+
+		fullExport.footer();
+		domExport.footer();
+		timer.export((long)size*size+(long)domRows.length*domCols.length);
+
+	}
+
+	// Builds the text in memory, for the String-returning methods that callers already rely on
+	public static String toString(Format format, Cells cells, int[] rows, int[] cols) {
+
+		return toString(format, cells, rows, cols, rows.length+2);
+
+	}
+
+	// toString() with a READABLE header underlined by dashes groups of 8 dashes, as in write()
+	public static String toString(Format format, Cells cells, int[] rows, int[] cols, int dashes) {
+
+		StringWriter out = new StringWriter();
+
+		try {
+
+			write(out, format, cells, rows, cols, dashes);
+
+		} catch(IOException e) {
+
+			throw new UncheckedIOException(e); // StringWriter never throws
+
+		}
+
+		return out.toString();
+
+	}
+
+	// Returns an array with all indices of an array of a certain size
+	public static int[] indices(int size) {
+
+		int[] toReturn = new int[size];
+
+		for(int i = 0; i<size; i++)
+			toReturn[i] = i;
+
+		return toReturn;
+
+	}
+
+	public static int[] toArray(List<Integer> list) {
+
+		int[] toReturn = new int[list.size()];
+
+		for(int i = 0; i<toReturn.length; i++)
+			toReturn[i] = list.get(i);
+
+		return toReturn;
+
+	}
+
+	private void header(int dashes, int[] cols) throws IOException {
+
+		line.setLength(0);
+
+		switch(format) {
+
+			case READABLE:
+
+				line.append('\t');
+
+				for(int col: cols)
+					line.append('\t').append(col);
+
+				line.append("\tMax Value P2 Will Keep\n");
+
+				for(int i = 0; i<dashes; i++)
+					line.append("--------");
+
+				line.append('\n');
+				break;
+
+			case EXCEL:
+
+				for(int col: cols)
+					line.append(' ').append(col);
+
+				line.append(" MaxValueP2WillKeep\n");
+				break;
+
+			default:
+
+				line.append("MaxValueP1/MaxValueP2");
+
+				for(int col: cols)
+					line.append(separator()).append(col);
+
+				line.append('\n');
+
+		}
+
+		flushLine();
+
+	}
+
+	private void row(int row, int[] cols) throws IOException {
+
+		line.setLength(0);
+		line.append(row);
+
+		if(format==Format.READABLE)
+			line.append("\t|");
+
+		char separator = separator();
+
+		for(int col: cols) {
+
+			line.append(separator);
+			cells.append(line, row, col);
+
+		}
+
+		line.append('\n');
+		flushLine();
+
+	}
+
+	private void footer() throws IOException {
+
+		line.setLength(0);
+
+		if(format==Format.READABLE)
+			line.append("Max Value P1 Will Keep\n");
+
+		else if(format==Format.EXCEL)
+			line.append("MaxValueP1WillKeep\n");
+
+		flushLine();
+
+	}
+
+	private char separator() {
+
+		switch(format) {
+
+			case EXCEL:
+				return ' ';
+
+			case CSV:
+				return ',';
+
+			default:
+				return '\t';
+
+		}
+
+	}
+
+	// Copies the line out without turning it into a String
+	private void flushLine() throws IOException {
+
+		if(chars.length<line.length())
+			chars = new char[Math.max(line.length(), chars.length*2)];
+
+		line.getChars(0, line.length(), chars, 0);
+		out.write(chars, 0, line.length());
+
+	}
+
+}
@@ -0,0 +1,156 @@
+import java.util.SplittableRandom;
+
+/*
+ * LeHer_Kernel: Counts P1's wins in one cell over a batch of deals without allocating or branching per deal.
+ * Mode.VECTOR of LeHer_Simulation runs every cell through it.
+ *
+ * Deal d takes its three random numbers from a counter-based generator instead of a stream: card j is
+ * mix(d*GOLDEN + key[j]), with the keys drawn once per cell. Any deal can be computed on its own, so deals can be spread over
+ * lanes of any width and still come out the same. create() returns LeHer_VectorKernel when the JVM runs with
+ * --add-modules jdk.incubator.vector, the CPU has wide enough vectors and the deck has at most VECTOR_MAX_CARDS cards.
+ * Otherwise it returns this scalar kernel, which does the same integer arithmetic one deal at a time, so both kernels give
+ * identical counts for a seed.
+ *
+ * A random number becomes a position in [0, bound) through a fixed-point multiply of its top 24 bits by bound, with a bias of
+ * at most bound/2^24 per position, far below the sampling error. A position becomes its rank position%cards+1 through a
+ * table built once per deck. The exchange rules are the three outcomes of LeHer_Rules, combined with selects instead of branches.
+ */
+
+public class LeHer_Kernel {
+
+	public static final int VERSION = 1; // Bump when the generator, the mapping or the rules change, so LeHer_Store drops old results
+
+	// Largest deck the fixed-point mapping keeps within an int
+	public static final int MAX_CARDS = 1<<18;
+
+	// Largest deck LeHer_VectorKernel takes ranks of without a table, larger decks get the scalar kernel
+	public static final int VECTOR_MAX_CARDS = 1<<15;
+
+	protected static final int GOLDEN = 0x9E3779B9;
+
+	protected final int numCards;
+	protected final int cards;
+	protected final int[] ranks; // ranks[position] = position%cards+1
+	protected final int blockRank; // 0 if nothing blocks, which no rank matches
+	protected final int tie; // 1 if ties go to P1
+
+	protected LeHer_Kernel(int cardSets, int cards, LeHer_Rules rules) {
+
+		if((long)cardSets*cards>MAX_CARDS)
+			throw new IllegalArgumentException("Deck too large for the kernel");
+
+		numCards = cardSets*cards;
+		this.cards = cards;
+		ranks = new int[numCards];
+
+		for(int position = 0; position<numCards; position++)
+			ranks[position] = position%cards+1;
+
+		blockRank = rules.getBlockRank();
+		tie = rules.tiesToP1() ? 1 : 0;
+
+	}
+
+	/*
+	 * The vector kernel if it can be used, otherwise the scalar one. -Dleher.kernel=scalar always picks the scalar kernel,
+	 * -Dleher.kernel=vector also takes the vector kernel on narrow vectors.
+	 */
+	public static LeHer_Kernel create(int cardSets, int cards, LeHer_Rules rules) {
+
+		String kernel = System.getProperty("leher.kernel", "");
+
+		if(!kernel.equals("scalar") && (long)cardSets*cards<=VECTOR_MAX_CARDS && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+
+			try {
+
+				LeHer_Kernel vector = (LeHer_Kernel)Class.forName("LeHer_VectorKernel").getDeclaredConstructor(int.class, int.class, LeHer_Rules.class).newInstance(cardSets, cards, rules);
+
+				if(kernel.equals("vector") || vector.lanes()>=8)
+					return vector;
+
+			} catch(ReflectiveOperationException | LinkageError e) {
+
+				// Compiled without the vector module, fall through to the scalar kernel
+
+			}
+
+		}
+
+		return new LeHer_Kernel(cardSets, cards, rules);
+
+	}
+
+	// Deals handled per step, 1 for the scalar kernel
+	public int lanes() {
+
+		return 1;
+
+	}
+
+	// P1's wins over deals 0..runs-1 of the cell whose keys are drawn from random
+	public long P1Wins(SplittableRandom random, int runs, int maxValP1, int maxValP2) {
+
+		final int key0 = random.nextInt();
+		final int key1 = random.nextInt();
+		final int key2 = random.nextInt();
+		return P1Wins(key0, key1, key2, 0, runs, maxValP1, maxValP2);
+
+	}
+
+	// P1's wins over deals from..to-1 for the given keys, also the vector kernel's tail
+	protected final int P1Wins(int key0, int key1, int key2, int from, int to, int maxValP1, int maxValP2) {
+
+		int P1Wins = 0;
+
+		for(int deal = from; deal<to; deal++) {
+
+			final int counter = deal*GOLDEN;
+			final int first = bounded(mix(counter+key0), numCards);
+			int second = bounded(mix(counter+key1), numCards-1);
+			int third = bounded(mix(counter+key2), numCards-2);
+
+			// Skips over the earlier positions from lowest to highest so no position can be drawn twice
+			second += second>=first ? 1 : 0;
+			third += third>=Math.min(first, second) ? 1 : 0;
+			third += third>=Math.max(first, second) ? 1 : 0;
+
+			final int P1Card = ranks[first];
+			final int P2Card = ranks[second];
+			final int deckCard = ranks[third];
+			final boolean blockP2 = P2Card==blockRank;
+			final boolean blockDeck = deckCard==blockRank;
+
+			boolean swapWin = blockP2 ? P1Card+tie>P2Card : P2Card+tie>P1Card & (blockDeck | P2Card+tie>deckCard);
+			boolean P2SwapWin = P1Card+tie>(blockDeck ? P2Card : deckCard);
+			boolean keepWin = P1Card+tie>P2Card;
+			boolean win = P1Card<=maxValP1 ? swapWin : P2Card<=maxValP2 ? P2SwapWin : keepWin;
+			P1Wins += win ? 1 : 0;
+
+		}
+
+		return P1Wins;
+
+	}
+
+	// lowbias32 finalizer by Chris Wellons, a bijection on ints with good avalanche
+	protected static int mix(int x) {
+
+		x ^= x>>>16;
+		x *= 0x7feb352d;
+		x ^= x>>>15;
+		x *= 0x846ca68b;
+		x ^= x>>>16;
+		return x;
+
+	}
+
+	// floor(top24(random) * bound / 2^24), split in two 12-bit halves so the products fit in an int
+	protected static int bounded(int random, int bound) {
+
+		final int high = random>>>20;
+		final int low = random>>>8 & 0xFFF;
+		return high*bound+(low*bound>>>12)>>>12;
+
+	}
+
+}
@@ -0,0 +1,125 @@
+import java.math.BigInteger;
+import java.nio.LongBuffer;
+
+/*
+ * LeHer_Matrix: Square matrix of win probabilities that all share one exact denominator.
+ * Numerators are kept in one flat long[] in row-major order, so a cell costs 8 bytes instead of a Fraction object,
+ * and comparing two cells is a comparison of two longs. Cells whose numerator doesn't fit in a long are kept as
+ * BigIntegers on the side, which only happens when the denominator itself is close to overflowing.
+ * The denominator and the values derived from a numerator come from LeHer_ExactMatrix.
+ */
+
+public class LeHer_Matrix extends LeHer_ExactMatrix {
+
+	private final long[] numerators;
+	private BigInteger[] bigNumerators; // null until a cell needs it
+
+	public LeHer_Matrix(int size, long denominator) {
+
+		super(size, denominator);
+		numerators = new long[cells(size)];
+
+	}
+
+	// Copies size*size numerators from the buffer in row-major order, used to read a matrix back from LeHer_Store
+	public LeHer_Matrix(int size, long denominator, LongBuffer numerators) {
+
+		this(size, denominator);
+		numerators.get(this.numerators);
+
+	}
+
+	public LeHer_Matrix(int size, BigInteger denominator) {
+
+		super(size, denominator);
+		numerators = new long[cells(size)];
+
+	}
+
+	// size*size, which has to fit in one Java array
+	private static int cells(int size) {
+
+		long cells = (long)size*size;
+
+		if(size<0 || cells>Integer.MAX_VALUE-8)
+			throw new IllegalArgumentException(size + " x " + size + " is too large for LeHer_Matrix, use LeHer_OffHeapMatrix or LeHer_MatrixView");
+
+		return (int)cells;
+
+	}
+
+	public boolean isBig() {
+
+		return bigNumerators!=null || !denominatorFits();
+
+	}
+
+	// Read-only view of the long numerators in row-major order; cells kept as BigIntegers aren't in it
+	public LongBuffer numerators() {
+
+		return LongBuffer.wrap(numerators).asReadOnlyBuffer();
+
+	}
+
+	// The numerators array itself, for LeHer_Dominance to scan packed rows; only valid while isBig() is false
+	long[] packed() {
+
+		return numerators;
+
+	}
+
+	public void set(int row, int col, long numerator) {
+
+		numerators[row*size+col] = numerator;
+
+		if(bigNumerators!=null)
+			bigNumerators[row*size+col] = null;
+
+	}
+
+	public void set(int row, int col, BigInteger numerator) {
+
+		if(numerator.bitLength()<Long.SIZE) {
+
+			set(row, col, numerator.longValue());
+			return;
+
+		}
+
+		if(bigNumerators==null)
+			bigNumerators = new BigInteger[numerators.length];
+
+		bigNumerators[row*size+col] = numerator;
+
+	}
+
+	// Throws ArithmeticException if the numerator doesn't fit in a long
+	public long numerator(int row, int col) {
+
+		if(bigNumerators!=null && bigNumerators[row*size+col]!=null)
+			throw new ArithmeticException("long overflow");
+
+		return numerators[row*size+col];
+
+	}
+
+	public BigInteger bigNumerator(int row, int col) {
+
+		if(bigNumerators!=null && bigNumerators[row*size+col]!=null)
+			return bigNumerators[row*size+col];
+
+		return BigInteger.valueOf(numerators[row*size+col]);
+
+	}
+
+	// Compares two cells straight off the array while no cell needs BigInteger
+	public int compare(int row, int col, int otherRow, int otherCol) {
+
+		if(bigNumerators==null)
+			return Long.compare(numerators[row*size+col], numerators[otherRow*size+otherCol]);
+
+		return bigNumerator(row, col).compareTo(bigNumerator(otherRow, otherCol));
+
+	}
+
+}
@@ -0,0 +1,204 @@
+import java.math.BigInteger;
+import java.util.*;
+
+/*
+ * LeHer_MatrixView: The exact win probability matrix as a LeHer_ExactMatrix like LeHer_Matrix, but without its size^2 numerators.
+ * Every cell is evaluated on demand by LeHer_Exact from its O(n) prefix sums, so a deck of 100,000 values costs a few
+ * megabytes instead of the 80 gigabytes of a filled LeHer_Matrix, and a single cell or row is as cheap as it looks.
+ *
+ * Rows that are read often can be memoized, up to maxRows of them in LRU order, which keeps memory at O(maxRows*n).
+ * A cell that isn't memoized is evaluated on its own in O(1), and its row is only filled once it has been read size times,
+ * the cost of filling it. Row scans like LeHer_Dominance's row comparisons then run off memoized rows, while its column
+ * scans, which touch every row once, can't evict the rows in use every time. With maxRows 0 nothing is kept.
+ */
+
+public class LeHer_MatrixView extends LeHer_ExactMatrix {
+
+	// Numerators of one memoized row; big holds the cells that overflow a long, null if there are none
+	private static final class Row {
+
+		private final long[] numerators;
+		private final BigInteger[] big;
+
+		private Row(long[] numerators, BigInteger[] big) {
+
+			this.numerators = numerators;
+			this.big = big;
+
+		}
+
+	}
+
+	private final LeHer_Exact exact;
+	private final int maxRows;
+	private final LinkedHashMap<Integer, Row> rows; // null if maxRows is 0, guarded by itself
+	private final int[] reads; // Reads of each row since it was last memoized, guarded by rows
+
+	public LeHer_MatrixView(int cardSets, int cards) {
+
+		this(new LeHer_Exact(cardSets, cards), 0);
+
+	}
+
+	public LeHer_MatrixView(int cardSets, int cards, int maxRows) {
+
+		this(new LeHer_Exact(cardSets, cards), maxRows);
+
+	}
+
+	// Views the cells of exact, memoizing up to maxRows rows
+	public LeHer_MatrixView(LeHer_Exact exact, int maxRows) {
+
+		super(exact.getCards()+1, exact.bigDenominator());
+
+		if(maxRows<0)
+			throw new IllegalArgumentException("maxRows can't be negative");
+
+		this.exact = exact;
+		this.maxRows = maxRows;
+		rows = maxRows==0 ? null : new LinkedHashMap<Integer, Row>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+
+				return size()>LeHer_MatrixView.this.maxRows;
+
+			}
+
+		};
+		reads = maxRows==0 ? null : new int[size];
+
+	}
+
+	// Number of rows held right now
+	public int memoizedRows() {
+
+		if(rows==null)
+			return 0;
+
+		synchronized(rows) {
+
+			return rows.size();
+
+		}
+
+	}
+
+	// Throws ArithmeticException if the numerator doesn't fit in a long
+	public long numerator(int row, int col) {
+
+		checkIndex(row, col);
+		Row cached = row(row);
+
+		if(cached==null)
+			return exact.numerator(row, col);
+
+		if(cached.big!=null && cached.big[col]!=null)
+			throw new ArithmeticException("long overflow");
+
+		return cached.numerators[col];
+
+	}
+
+	public BigInteger bigNumerator(int row, int col) {
+
+		checkIndex(row, col);
+		Row cached = row(row);
+
+		if(cached==null) {
+
+			try {
+
+				return BigInteger.valueOf(exact.numerator(row, col));
+
+			} catch(ArithmeticException e) {
+
+				return exact.bigNumerator(row, col);
+
+			}
+
+		}
+
+		if(cached.big!=null && cached.big[col]!=null)
+			return cached.big[col];
+
+		return BigInteger.valueOf(cached.numerators[col]);
+
+	}
+
+	// Fills a LeHer_Matrix with every cell, for decks small enough to hold one
+	public LeHer_Matrix materialize() {
+
+		if((long)size*size>Integer.MAX_VALUE)
+			throw new IllegalStateException(size + " x " + size + " is too large to materialize");
+
+		return exact.solveMatrix();
+
+	}
+
+	// Eliminates dominated strategies straight off the view; only O(n) of state is kept beyond the memoized rows
+	public ArrayList<ArrayList<Integer>> strictlyDominantStrategy() {
+
+		return new LeHer_Dominance(size, this).toLists();
+
+	}
+
+	// Returns the memoized row, or null if the row hasn't been read often enough yet and the cell is to be evaluated alone
+	private Row row(int row) {
+
+		if(rows==null)
+			return null;
+
+		synchronized(rows) {
+
+			Row cached = rows.get(row);
+
+			if(cached!=null || ++reads[row]<size)
+				return cached;
+
+			reads[row] = 0;
+
+		}
+
+		long[] numerators = new long[size];
+		BigInteger[] big = null;
+
+		for(int col = 0; col<size; col++) {
+
+			try {
+
+				numerators[col] = exact.numerator(row, col);
+
+			} catch(ArithmeticException e) {
+
+				if(big==null)
+					big = new BigInteger[size];
+
+				big[col] = exact.bigNumerator(row, col);
+
+			}
+
+		}
+
+		Row cached = new Row(numerators, big);
+
+		// Two threads may evaluate the same row; both results are identical, so the last one in wins
+		synchronized(rows) {
+
+			rows.put(row, cached);
+
+		}
+
+		return cached;
+
+	}
+
+	private void checkIndex(int row, int col) {
+
+		if(row<0 || row>=size || col<0 || col>=size)
+			throw new IndexOutOfBoundsException("Cell (" + row + ", " + col + ") outside " + size + " x " + size);
+
+	}
+
+}
@@ -0,0 +1,317 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.*;
+
+import jdk.jfr.*;
+
+/*
+ * LeHer_Metrics: Timers and counters for the phases every solve goes through, filling the matrix, eliminating dominated
+ * strategies and exporting, exposed over JMX through LeHer_MetricsMBean and as leher.Phase Flight Recorder events.
+ *
+ * A phase is bracketed with start() and one of the Timer's stop methods. When the counters are disabled and no recording
+ * has leher.Phase enabled, start() hands back a shared Timer whose stop methods return at once, so switched off the cost
+ * is two calls per phase and nothing per cell or per deal. The counters are enabled with -Dleher.metrics=true or through
+ * the Enabled attribute once register() has put the MBean on the platform server.
+ */
+
+public class LeHer_Metrics implements LeHer_MetricsMBean {
+
+	public enum Phase { MATRIX, DOMINANCE, EXPORT }
+
+	public static final String OBJECT_NAME = "leher:type=Metrics";
+
+	@Name("leher.Phase")
+	@Label("LeHer Phase")
+	@Category("LeHer")
+	@Description("One phase of a solve: filling the matrix, eliminating dominated strategies or exporting")
+	@StackTrace(false)
+	static final class PhaseEvent extends Event {
+
+		@Label("Engine")
+		String engine;
+
+		@Label("Phase")
+		String phase;
+
+		@Label("Matrix Size")
+		int size;
+
+		@Label("Cells")
+		long cells;
+
+		@Label("Deals")
+		long deals;
+
+		@Label("Comparisons")
+		long comparisons;
+
+		@Label("Rounds")
+		int rounds;
+
+	}
+
+	// One timed phase; exactly one of the stop methods ends it
+	public static final class Timer {
+
+		private final Phase phase;
+		private final String engine;
+		private final int size;
+		private final long start;
+		private final PhaseEvent event; // null if no recording wants it
+
+		private Timer(Phase phase, String engine, int size, PhaseEvent event) {
+
+			this.phase = phase;
+			this.engine = engine;
+			this.size = size;
+			this.event = event;
+			start = System.nanoTime();
+
+			if(event!=null)
+				event.begin();
+
+		}
+
+		// cells filled and deals dealt to fill them, 0 for exact engines
+		public void matrix(long cells, long deals) {
+
+			stop(cells, deals, 0L, 0);
+
+		}
+
+		public void dominance(int rounds, long comparisons) {
+
+			stop(0L, 0L, comparisons, rounds);
+
+		}
+
+		// cells written
+		public void export(long cells) {
+
+			stop(cells, 0L, 0L, 0);
+
+		}
+
+		private void stop(long cells, long deals, long comparisons, int rounds) {
+
+			if(this==OFF)
+				return;
+
+			long nanos = System.nanoTime()-start;
+
+			if(enabled)
+				record(phase, nanos, cells, deals, comparisons, rounds);
+
+			if(event!=null) {
+
+				event.end();
+
+				if(event.shouldCommit()) {
+
+					event.engine = engine;
+					event.phase = phase.name();
+					event.size = size;
+					event.cells = cells;
+					event.deals = deals;
+					event.comparisons = comparisons;
+					event.rounds = rounds;
+					event.commit();
+
+				}
+
+			}
+
+		}
+
+	}
+
+	private static final Timer OFF = new Timer(null, null, 0, null);
+	private static final LeHer_Metrics INSTANCE = new LeHer_Metrics();
+
+	private static volatile boolean enabled = Boolean.getBoolean("leher.metrics");
+	private static volatile double lastDealsPerSecond;
+	private static final LongAdder[] nanos = { new LongAdder(), new LongAdder(), new LongAdder() }; // By Phase.ordinal()
+	private static final LongAdder[] counts = { new LongAdder(), new LongAdder(), new LongAdder() };
+	private static final LongAdder cells = new LongAdder();
+	private static final LongAdder deals = new LongAdder();
+	private static final LongAdder dealNanos = new LongAdder(); // Time of the phases that dealt
+	private static final LongAdder comparisons = new LongAdder();
+	private static final LongAdder rounds = new LongAdder();
+
+	private LeHer_Metrics() {
+
+	}
+
+	// Starts timing a phase of engine on a size x size matrix
+	public static Timer start(Phase phase, String engine, int size) {
+
+		PhaseEvent event = new PhaseEvent();
+
+		if(!event.isEnabled())
+			event = null;
+
+		if(!enabled && event==null)
+			return OFF;
+
+		return new Timer(phase, engine, size, event);
+
+	}
+
+	// Puts the MBean on the platform MBean server, once; later calls do nothing
+	public static synchronized void register() {
+
+		try {
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+
+			if(!server.isRegistered(name))
+				server.registerMBean(INSTANCE, name);
+
+		} catch(JMException e) {
+
+			throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+
+		}
+
+	}
+
+	// The counters as seen over JMX, for callers that read them in process
+	public static LeHer_MetricsMBean get() {
+
+		return INSTANCE;
+
+	}
+
+	private static void record(Phase phase, long phaseNanos, long phaseCells, long phaseDeals, long phaseComparisons, int phaseRounds) {
+
+		nanos[phase.ordinal()].add(phaseNanos);
+		counts[phase.ordinal()].increment();
+		cells.add(phaseCells);
+		comparisons.add(phaseComparisons);
+		rounds.add(phaseRounds);
+
+		if(phaseDeals>0) {
+
+			deals.add(phaseDeals);
+			dealNanos.add(phaseNanos);
+			lastDealsPerSecond = phaseDeals*1e9/Math.max(1L, phaseNanos);
+
+		}
+
+	}
+
+	public boolean isEnabled() {
+
+		return enabled;
+
+	}
+
+	public void setEnabled(boolean enabled) {
+
+		LeHer_Metrics.enabled = enabled;
+
+	}
+
+	public long getMatrixNanos() {
+
+		return nanos[Phase.MATRIX.ordinal()].sum();
+
+	}
+
+	public long getMatrixCount() {
+
+		return counts[Phase.MATRIX.ordinal()].sum();
+
+	}
+
+	public long getDominanceNanos() {
+
+		return nanos[Phase.DOMINANCE.ordinal()].sum();
+
+	}
+
+	public long getDominanceCount() {
+
+		return counts[Phase.DOMINANCE.ordinal()].sum();
+
+	}
+
+	public long getExportNanos() {
+
+		return nanos[Phase.EXPORT.ordinal()].sum();
+
+	}
+
+	public long getExportCount() {
+
+		return counts[Phase.EXPORT.ordinal()].sum();
+
+	}
+
+	public long getCellsComputed() {
+
+		return cells.sum();
+
+	}
+
+	public long getDealsSimulated() {
+
+		return deals.sum();
+
+	}
+
+	public long getDominanceComparisons() {
+
+		return comparisons.sum();
+
+	}
+
+	public long getEliminationRounds() {
+
+		return rounds.sum();
+
+	}
+
+	public double getDealsPerSecond() {
+
+		long time = dealNanos.sum();
+		return time==0 ? 0.0 : deals.sum()*1e9/time;
+
+	}
+
+	public double getLastDealsPerSecond() {
+
+		return lastDealsPerSecond;
+
+	}
+
+	public void reset() {
+
+		for(Phase phase: Phase.values()) {
+
+			nanos[phase.ordinal()].reset();
+			counts[phase.ordinal()].reset();
+
+		}
+
+		cells.reset();
+		deals.reset();
+		dealNanos.reset();
+		comparisons.reset();
+		rounds.reset();
+		lastDealsPerSecond = 0.0;
+
+	}
+
+	public String toString() {
+
+		return "Matrix: " + getMatrixCount() + " in " + String.format("%.3f", getMatrixNanos()/1e6) + " ms, Dominance: " + getDominanceCount()
+				+ " in " + String.format("%.3f", getDominanceNanos()/1e6) + " ms, Export: " + getExportCount() + " in " + String.format("%.3f", getExportNanos()/1e6)
+				+ " ms, Cells: " + getCellsComputed() + ", Deals: " + getDealsSimulated() + ", Deals/s: " + String.format("%.0f", getDealsPerSecond())
+				+ ", Comparisons: " + getDominanceComparisons() + ", Rounds: " + getEliminationRounds();
+
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * LeHer_MetricsMBean: JMX view of LeHer_Metrics, registered as leher:type=Metrics by LeHer_Metrics.register().
+ * Times are totals in nanoseconds since the last reset(), counts are totals over every solve in the JVM.
+ */
+
+public interface LeHer_MetricsMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getMatrixNanos();
+
+	long getMatrixCount();
+
+	long getDominanceNanos();
+
+	long getDominanceCount();
+
+	long getExportNanos();
+
+	long getExportCount();
+
+	long getCellsComputed();
+
+	long getDealsSimulated();
+
+	long getDominanceComparisons();
+
+	long getEliminationRounds();
+
+	// Deals over the time spent in phases that dealt
+	double getDealsPerSecond();
+
+	// Deals per second of the most recent phase that dealt
+	double getLastDealsPerSecond();
+
+	void reset();
+
+}
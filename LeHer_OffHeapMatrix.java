@@ -0,0 +1,254 @@
+import java.io.*;
+import java.math.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/*
+ * LeHer_OffHeapMatrix: LeHer_Matrix for decks whose size^2 numerators don't fit in the heap or in one Java array.
+ * The numerators live outside the heap in direct ByteBuffers, or in a memory-mapped file, which the OS pages in and out
+ * on its own, so a 50,000 value deck's 2.5 billion cells cost the GC nothing and aren't bound by -Xmx.
+ *
+ * Cells are stored in TILE x TILE tiles of 32 KB, tile after tile in row-major order, and a buffer holds a whole number
+ * of tiles so no tile straddles two of them. fill() evaluates one tile at a time, spread over a ForkJoinPool, and a run
+ * of LeHer_Dominance comparisons along a row or down a column stays in one tile for TILE cells either way, instead of
+ * striding across size*8 bytes per cell down a column of a row-major layout.
+ *
+ * Cells whose numerator doesn't fit in a long are kept as BigIntegers on the side, as in LeHer_Matrix.
+ */
+
+public class LeHer_OffHeapMatrix extends LeHer_ExactMatrix {
+
+	public static final int TILE = 64;
+	private static final int TILE_CELLS = TILE*TILE;
+	private static final int TILES_PER_BUFFER = (1<<30)/(TILE_CELLS*Long.BYTES); // 1 GB per buffer
+
+	private final int tiles; // Tiles per side
+	private final ByteBuffer[] buffers;
+	private final ConcurrentHashMap<Long, BigInteger> bigNumerators = new ConcurrentHashMap<Long, BigInteger>();
+
+	// Matrix in direct buffers, which count against -XX:MaxDirectMemorySize rather than the heap
+	public LeHer_OffHeapMatrix(int size, BigInteger denominator) {
+
+		this(size, denominator, null);
+
+	}
+
+	// Matrix in file, which is created or overwritten and grown to the matrix's size; null gives direct buffers
+	public LeHer_OffHeapMatrix(int size, BigInteger denominator, Path file) {
+
+		super(checkSize(size), denominator);
+		tiles = (size+TILE-1)/TILE;
+		long tileCount = (long)tiles*tiles;
+
+		if(tileCount>Integer.MAX_VALUE)
+			throw new IllegalArgumentException(size + " x " + size + " has too many tiles");
+
+		buffers = new ByteBuffer[(int)((tileCount+TILES_PER_BUFFER-1)/TILES_PER_BUFFER)];
+
+		try {
+
+			if(file==null)
+				for(int buffer = 0; buffer<buffers.length; buffer++)
+					buffers[buffer] = ByteBuffer.allocateDirect(bufferBytes(buffer, tileCount)).order(ByteOrder.nativeOrder());
+
+			else
+				try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+					// The mappings stay valid after the channel is closed
+					for(int buffer = 0; buffer<buffers.length; buffer++) {
+
+						long position = (long)buffer*TILES_PER_BUFFER*TILE_CELLS*Long.BYTES;
+						buffers[buffer] = channel.map(FileChannel.MapMode.READ_WRITE, position, bufferBytes(buffer, tileCount)).order(ByteOrder.nativeOrder());
+
+					}
+
+				}
+
+		} catch(IOException e) {
+
+			throw new UncheckedIOException("Could not map " + file, e);
+
+		}
+
+	}
+
+	// Checked before the superclass constructor takes the size
+	private static int checkSize(int size) {
+
+		if(size<1)
+			throw new IllegalArgumentException("Size must be positive");
+
+		return size;
+
+	}
+
+	public boolean isBig() {
+
+		return !denominatorFits() || !bigNumerators.isEmpty();
+
+	}
+
+	/*
+	 * Evaluates every cell of exact into this matrix, one tile per task, and returns this.
+	 * exact must be for a deck of size-1 values with the same denominator.
+	 */
+	public LeHer_OffHeapMatrix fill(LeHer_Exact exact, ForkJoinPool pool) {
+
+		if(exact.getCards()+1!=size || !exact.bigDenominator().equals(bigDenominator()))
+			throw new IllegalArgumentException("LeHer_Exact is for another deck");
+
+		LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.MATRIX, "LeHer_OffHeapMatrix", size);
+		pool.invoke(new TileTask(exact, 0, tiles*tiles));
+		timer.matrix((long)size*size, 0L);
+		return this;
+
+	}
+
+	public void set(int row, int col, long numerator) {
+
+		buffer(row, col).putLong(offset(row, col), numerator);
+		bigNumerators.remove(key(row, col));
+
+	}
+
+	public void set(int row, int col, BigInteger numerator) {
+
+		if(numerator.bitLength()<Long.SIZE) {
+
+			set(row, col, numerator.longValue());
+			return;
+
+		}
+
+		bigNumerators.put(key(row, col), numerator);
+
+	}
+
+	// Throws ArithmeticException if the numerator doesn't fit in a long
+	public long numerator(int row, int col) {
+
+		if(!bigNumerators.isEmpty() && bigNumerators.containsKey(key(row, col)))
+			throw new ArithmeticException("long overflow");
+
+		return buffer(row, col).getLong(offset(row, col));
+
+	}
+
+	public BigInteger bigNumerator(int row, int col) {
+
+		BigInteger big = bigNumerators.isEmpty() ? null : bigNumerators.get(key(row, col));
+		return big!=null ? big : BigInteger.valueOf(buffer(row, col).getLong(offset(row, col)));
+
+	}
+
+	// Compares two cells straight off the buffers while no cell needs BigInteger
+	public int compare(int row, int col, int otherRow, int otherCol) {
+
+		if(bigNumerators.isEmpty())
+			return Long.compare(buffer(row, col).getLong(offset(row, col)), buffer(otherRow, otherCol).getLong(offset(otherRow, otherCol)));
+
+		return bigNumerator(row, col).compareTo(bigNumerator(otherRow, otherCol));
+
+	}
+
+	// Writes a file-backed matrix's changes out to disk; does nothing for direct buffers
+	public void force() {
+
+		for(ByteBuffer buffer: buffers)
+			if(buffer instanceof MappedByteBuffer)
+				((MappedByteBuffer)buffer).force();
+
+	}
+
+	private ByteBuffer buffer(int row, int col) {
+
+		return buffers[(int)(tile(row, col)/TILES_PER_BUFFER)];
+
+	}
+
+	// Byte offset of the cell in its buffer
+	private int offset(int row, int col) {
+
+		int tileOffset = (int)(tile(row, col)%TILES_PER_BUFFER)*TILE_CELLS;
+		return (tileOffset + (row%TILE)*TILE + col%TILE)*Long.BYTES;
+
+	}
+
+	private long tile(int row, int col) {
+
+		return (long)(row/TILE)*tiles + col/TILE;
+
+	}
+
+	private long key(int row, int col) {
+
+		return (long)row*size+col;
+
+	}
+
+	private static int bufferBytes(int buffer, long tileCount) {
+
+		return (int)Math.min(TILES_PER_BUFFER, tileCount-(long)buffer*TILES_PER_BUFFER)*TILE_CELLS*Long.BYTES;
+
+	}
+
+	// Fills tiles [from, to), splitting the range in half until one tile is left
+	private class TileTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final LeHer_Exact exact;
+		private final int from;
+		private final int to;
+
+		private TileTask(LeHer_Exact exact, int from, int to) {
+
+			this.exact = exact;
+			this.from = from;
+			this.to = to;
+
+		}
+
+		protected void compute() {
+
+			if(to-from>1) {
+
+				int middle = (from+to)>>>1;
+				invokeAll(new TileTask(exact, from, middle), new TileTask(exact, middle, to));
+				return;
+
+			}
+
+			for(int tile = from; tile<to; tile++) {
+
+				int fromRow = tile/tiles*TILE;
+				int fromCol = tile%tiles*TILE;
+
+				for(int row = fromRow; row<Math.min(size, fromRow+TILE); row++) {
+
+					for(int col = fromCol; col<Math.min(size, fromCol+TILE); col++) {
+
+						// exact puts the same cells in bigNumerators on every fill, so the long writes skip set()'s lookup
+						try {
+
+							buffer(row, col).putLong(offset(row, col), exact.numerator(row, col));
+
+						} catch(ArithmeticException e) {
+
+							set(row, col, exact.bigNumerator(row, col));
+
+						}
+
+					}
+
+				}
+
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,735 @@
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+ * LeHer_Players: Le Her for a table of players >= 2, solved exactly or simulated.
+ * Seat 0 plays first and the last seat is the dealer. In turn every seat may swap cards with the next seat, and the dealer
+ * may swap with the deck card. A player holding the blocking rank refuses a swap, and the dealer can't take a blocking
+ * deck card, as in LeHer_Rules. The highest card wins and ties go to the earliest seat if the rules give ties to P1,
+ * otherwise to the latest.
+ *
+ * A player who wasn't asked to swap uses a threshold strategy and acts if their card is <= it. A player who was asked
+ * ignores their threshold. If they refused, they stand. If they were given a card, they know the player before them now holds
+ * the card they gave away, so they pass it on when that card beats theirs and stand otherwise.
+ * With two players this is exactly P2's play in the other engines, and seat 0's wins equal LeHer_Rules.solveMatrix().
+ *
+ * Every seat picks a threshold in [0, cards], so the payoffs form a tensor with (cards+1)^players cells. It is stored flat,
+ * with seat 0's threshold as the slowest dimension and the wins of seats 0..players-2 next to each other in every cell.
+ * The dealer's wins are whatever is left. For one deal the thresholds where each seat acts form a box per path through
+ * the turns, so a deal adds its winner to at most 2^players corners of a difference tensor, and one prefix sum per
+ * dimension finishes the tensor.
+ *
+ * The fill works through seat 0's rank one value at a time, and each rank only touches the slabs for seat 0's thresholds
+ * 0 and rank. Workers fill private copies of those two slabs in parallel. The exact engine enumerates the ranks of seats
+ * 1..players-1 with their multiplicities and counts the deck card's positions in O(players). The simulation deals
+ * runs/cards hands for each of seat 0's ranks, in fixed chunks with one SplittableRandom each, so results only depend on the seed.
+ *
+ * The tensor takes 8*(cards+1)^players*(players-1) bytes, about 300MB for 6 players and 13 ranks.
+ */
+
+public class LeHer_Players {
+
+	// Hands dealt per simulation chunk, fixed so that the chunking never depends on the thread count
+	private static final int CHUNK_RUNS = 1<<14;
+
+	private static final int FREE = 0;
+	private static final int RECEIVED = 1;
+	private static final int REFUSED = 2;
+
+	private final int players;
+	private final int cardSets;
+	private final int cards;
+	private final LeHer_Rules rules;
+	private final boolean exact;
+	private final int size;
+	private final int seats; // Seats stored per cell, every seat but the dealer
+	private final int[] strides; // strides[seat] in cells
+	private final long[] wins;
+	private final long total; // Denominator of every cell: deals for the simulation, numCards*(numCards-1)*...*(numCards-players)
+	private ArrayList<ArrayList<Integer>> solution;
+
+	// Exact payoffs under the standard rules
+	public LeHer_Players(int players, int cardSets, int cards) {
+
+		this(players, cardSets, cards, LeHer_Rules.standard(cards), ForkJoinPool.commonPool());
+
+	}
+
+	public LeHer_Players(int players, int cardSets, int cards, LeHer_Rules rules, ForkJoinPool pool) {
+
+		this(true, players, cardSets, cards, rules, 0, 0L, pool);
+
+	}
+
+	// Simulated payoffs under the standard rules, runs hands in total
+	public LeHer_Players(int players, int cardSets, int cards, int runs, long seed) {
+
+		this(players, cardSets, cards, LeHer_Rules.standard(cards), runs, seed, ForkJoinPool.commonPool());
+
+	}
+
+	public LeHer_Players(int players, int cardSets, int cards, LeHer_Rules rules, int runs, long seed, ForkJoinPool pool) {
+
+		this(false, players, cardSets, cards, rules, runs, seed, pool);
+
+	}
+
+	private LeHer_Players(boolean exact, int players, int cardSets, int cards, LeHer_Rules rules, int runs, long seed, ForkJoinPool pool) {
+
+		if(players<2)
+			throw new IllegalArgumentException("At least 2 players are needed");
+
+		if((long)cardSets*cards<players+1)
+			throw new IllegalArgumentException("Not enough cards for " + players + " players and the deck card");
+
+		if(rules.getCards()!=cards)
+			throw new IllegalArgumentException("Rule set is for " + rules.getCards() + " cards");
+
+		if(!exact && runs<cards)
+			throw new IllegalArgumentException("runs must cover every rank of seat 0");
+
+		this.players = players;
+		this.cardSets = cardSets;
+		this.cards = cards;
+		this.rules = rules;
+		this.exact = exact;
+		size = cards+1;
+		seats = players-1;
+		strides = new int[players];
+		long cells = 1L;
+
+		for(int seat = players-1; seat>=0; seat--) {
+
+			if(cells*size*seats>Integer.MAX_VALUE-8)
+				throw new IllegalArgumentException("Tensor too large for " + players + " players and " + cards + " cards");
+
+			strides[seat] = (int)cells;
+			cells *= size;
+
+		}
+
+		wins = new long[(int)cells*seats];
+
+		if(exact) {
+
+			// Each cell sums to the denominator, so wrapped long arithmetic in between is harmless as long as that fits
+			BigInteger denominator = BigInteger.ONE;
+
+			for(int i = 0; i<=players; i++)
+				denominator = denominator.multiply(BigInteger.valueOf((long)cardSets*cards-i));
+
+			if(denominator.bitLength()>62)
+				throw new ArithmeticException("Deck too large for the exact engine");
+
+			total = denominator.longValue();
+
+		} else {
+
+			total = (long)(runs/cards)*cards;
+
+		}
+
+		LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.MATRIX, "LeHer_Players", size);
+		fill(runs, seed, pool);
+		timer.matrix(cells, exact ? 0L : total);
+		solution = strictlyDominantStrategy();
+
+	}
+
+	public int getPlayers() {
+
+		return players;
+
+	}
+
+	public int getCards() {
+
+		return cards;
+
+	}
+
+	public int getCardSets() {
+
+		return cardSets;
+
+	}
+
+	public boolean isExact() {
+
+		return exact;
+
+	}
+
+	// Denominator shared by every cell, which is the number of hands dealt for the simulation
+	public long denominator() {
+
+		return total;
+
+	}
+
+	// Deals (weighted by their multiplicity for the exact engine) that seat wins when every seat plays thresholds[seat]
+	public long numerator(int seat, int... thresholds) {
+
+		int cell = cell(thresholds);
+
+		if(seat<seats)
+			return wins[cell*seats+seat];
+
+		long others = 0L;
+
+		for(int i = 0; i<seats; i++)
+			others += wins[cell*seats+i];
+
+		return total-others;
+
+	}
+
+	public double probability(int seat, int... thresholds) {
+
+		return ((double)numerator(seat, thresholds))/total;
+
+	}
+
+	// Strategies of each seat that survive iterated elimination, seat 0's in get(0) and the dealer's last
+	public ArrayList<ArrayList<Integer>> getSolution() {
+
+		return solution;
+
+	}
+
+	/*
+	 * Iterated elimination over every seat, with the same test as LeHer_Dominance: a threshold goes if another surviving
+	 * threshold of the same seat is never worse against the surviving thresholds of the others, and better against some.
+	 * Seats take turns until a full round removes nothing.
+	 */
+	public ArrayList<ArrayList<Integer>> strictlyDominantStrategy() {
+
+		BitSet[] survivors = new BitSet[players];
+
+		for(int seat = 0; seat<players; seat++) {
+
+			survivors[seat] = new BitSet(size);
+			survivors[seat].set(0, size);
+
+		}
+
+		boolean removed = true;
+
+		while(removed) {
+
+			removed = false;
+
+			for(int seat = 0; seat<players; seat++) {
+
+				BitSet lines = survivors[seat];
+
+				for(int line = lines.nextSetBit(0); line>=0; line = lines.nextSetBit(line+1)) {
+
+					for(int other = lines.nextSetBit(0); other>=0; other = lines.nextSetBit(other+1)) {
+
+						if(other!=line && dominated(survivors, seat, line, other)) {
+
+							lines.clear(line);
+							removed = true;
+							break;
+
+						}
+
+					}
+
+				}
+
+			}
+
+		}
+
+		ArrayList<ArrayList<Integer>> toReturn = new ArrayList<ArrayList<Integer>>();
+
+		for(BitSet strategies: survivors) {
+
+			ArrayList<Integer> list = new ArrayList<Integer>();
+
+			for(int strategy = strategies.nextSetBit(0); strategy>=0; strategy = strategies.nextSetBit(strategy+1))
+				list.add(strategy);
+
+			toReturn.add(list);
+
+		}
+
+		return toReturn;
+
+	}
+
+	public String toString() {
+
+		StringBuilder toReturn = new StringBuilder();
+
+		for(int seat = 0; seat<players; seat++) {
+
+			toReturn.append(seat==players-1 ? "Dealer" : "P" + (seat+1)).append(" Dominant Strategies: ");
+
+			for(int strategy: solution.get(seat))
+				toReturn.append(' ').append(strategy);
+
+			toReturn.append('\n');
+
+		}
+
+		return toReturn.append(exact ? "Exact, " : "Simulated, ").append(rules).append('\n').toString();
+
+	}
+
+	// Returns true if line never beats other for seat over the surviving profiles of the other seats and loses to it somewhere
+	private boolean dominated(BitSet[] survivors, int seat, int line, int other) {
+
+		int[][] choices = new int[players][];
+
+		for(int i = 0; i<players; i++)
+			choices[i] = i==seat ? new int[] {line} : survivors[i].stream().toArray();
+
+		int[] odometer = new int[players];
+		int shift = (other-line)*strides[seat];
+		boolean worse = false;
+
+		while(true) {
+
+			int cell = 0;
+
+			for(int i = 0; i<players; i++)
+				cell += choices[i][odometer[i]]*strides[i];
+
+			int compare = Long.compare(payoff(seat, cell), payoff(seat, cell+shift));
+
+			if(compare>0)
+				return false;
+
+			if(compare<0)
+				worse = true;
+
+			// Next profile, last seat fastest
+			int i = players-1;
+
+			while(i>=0 && ++odometer[i]==choices[i].length)
+				odometer[i--] = 0;
+
+			if(i<0)
+				return worse;
+
+		}
+
+	}
+
+	private long payoff(int seat, int cell) {
+
+		if(seat<seats)
+			return wins[cell*seats+seat];
+
+		long others = 0L;
+
+		for(int i = 0; i<seats; i++)
+			others += wins[cell*seats+i];
+
+		return total-others;
+
+	}
+
+	private int cell(int[] thresholds) {
+
+		if(thresholds.length!=players)
+			throw new IllegalArgumentException("One threshold per seat is needed");
+
+		int cell = 0;
+
+		for(int seat = 0; seat<players; seat++)
+			cell += thresholds[seat]*strides[seat];
+
+		return cell;
+
+	}
+
+	private void fill(int runs, long seed, ForkJoinPool pool) {
+
+		final int slab = strides[0]*seats; // Entries per value of seat 0's threshold
+		SplittableRandom master = new SplittableRandom(seed);
+		final int chunks = exact ? 0 : (runs/cards+CHUNK_RUNS-1)/CHUNK_RUNS;
+
+		for(int rank = 1; rank<=cards; rank++) {
+
+			// Streams are split in rank then chunk order, before any work is handed out
+			SplittableRandom[] streams = null;
+
+			if(!exact) {
+
+				streams = new SplittableRandom[chunks];
+
+				for(int chunk = 0; chunk<chunks; chunk++)
+					streams[chunk] = master.split();
+
+			}
+
+			int items = exact ? cards : chunks;
+			int grain = Math.max(1, items/(2*pool.getParallelism()));
+			long[] difference = pool.invoke(new FillTask(rank, streams, runs/cards, grain, 0, items));
+
+			// Slab 0 of the private copy belongs to threshold 0, slab 1 to threshold rank
+			for(int i = 0; i<slab; i++) {
+
+				wins[i] += difference[i];
+				wins[rank*slab+i] += difference[slab+i];
+
+			}
+
+		}
+
+		// Prefix sums along every dimension turn the difference tensor into win counts
+		for(int seat = 0; seat<players; seat++) {
+
+			final int step = strides[seat]*seats;
+			final int block = step*size;
+
+			for(int start = 0; start<wins.length; start += block)
+				for(int i = start+step; i<start+block; i++)
+					wins[i] += wins[i-step];
+
+		}
+
+	}
+
+	// Fills items [from, to) for one rank of seat 0: ranks of seat 1 for the exact engine, chunks of hands for the simulation
+	private class FillTask extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int rank;
+		private final SplittableRandom[] streams;
+		private final int hands;
+		private final int grain;
+		private final int from;
+		private final int to;
+
+		private FillTask(int rank, SplittableRandom[] streams, int hands, int grain, int from, int to) {
+
+			this.rank = rank;
+			this.streams = streams;
+			this.hands = hands;
+			this.grain = grain;
+			this.from = from;
+			this.to = to;
+
+		}
+
+		protected long[] compute() {
+
+			if(to-from<=grain) {
+
+				Walker walker = new Walker(rank);
+
+				for(int item = from; item<to; item++) {
+
+					if(exact)
+						walker.enumerate(item+1);
+					else
+						walker.simulate(streams[item], Math.min(CHUNK_RUNS, hands-item*CHUNK_RUNS));
+
+				}
+
+				return walker.difference;
+
+			}
+
+			int mid = (from+to)>>>1;
+			FillTask right = new FillTask(rank, streams, hands, grain, mid, to);
+			right.fork();
+			long[] difference = new FillTask(rank, streams, hands, grain, from, mid).compute();
+			long[] rightDifference = right.join();
+
+			for(int i = 0; i<difference.length; i++)
+				difference[i] += rightDifference[i];
+
+			return difference;
+
+		}
+
+	}
+
+	// Plays out deals for one rank of seat 0 into a private difference tensor over the slabs for thresholds 0 and rank
+	private final class Walker {
+
+		private final int rank;
+		private final long[] difference;
+		private final int[] hand = new int[players];
+		private final int[] state = new int[players];
+		private final int[] offsets = new int[players]; // Upper corners of the box of thresholds reaching the current turn
+		private final int[] corners = new int[1<<players];
+		private final long[] values = new long[1<<players];
+		private final int[] used = new int[size]; // Cards of each rank held by the players
+		private final int[] positions = new int[players+1]; // Positions dealt so far, ascending
+		private final int tie;
+		private final long deck; // Positions left for the deck card
+		private int deckCard; // 0 while enumerating
+		private long weight;
+		private int base; // Lower corner of the box
+		private int bounded; // Seats whose box has an upper corner, the first ones in offsets
+
+		private Walker(int rank) {
+
+			this.rank = rank;
+			difference = new long[2*strides[0]*seats];
+			tie = rules.tiesToP1() ? 1 : 0;
+			deck = (long)cardSets*cards-players;
+			hand[0] = rank;
+
+		}
+
+		// Every deal where seat 1 holds second, weighted by how many ways the deck can produce it
+		private void enumerate(int second) {
+
+			used[rank]++;
+			weight = cardSets;
+			hand[1] = second;
+			deal(1, second);
+			used[rank]--;
+
+		}
+
+		private void deal(int seat, int card) {
+
+			long ways = cardSets-used[card];
+
+			if(ways==0)
+				return;
+
+			long previous = weight;
+			weight *= ways;
+			used[card]++;
+
+			if(seat==players-1) {
+
+				decide(0);
+
+			} else {
+
+				for(int next = 1; next<=cards; next++) {
+
+					hand[seat+1] = next;
+					deal(seat+1, next);
+
+				}
+
+			}
+
+			used[card]--;
+			weight = previous;
+
+		}
+
+		// Deals hands with seat 0 holding the first position of rank and every other card uniform over what's left
+		private void simulate(SplittableRandom random, int hands) {
+
+			final int numCards = cardSets*cards;
+			weight = 1L;
+
+			for(int numSims = 0; numSims<hands; numSims++) {
+
+				positions[0] = rank-1;
+				int dealt = 1;
+
+				for(int seat = 1; seat<=players; seat++) {
+
+					int position = random.nextInt(numCards-dealt);
+					int i = 0;
+
+					// Skips over the earlier positions from lowest to highest so no position can be drawn twice
+					while(i<dealt && position>=positions[i]) {
+
+						position++;
+						i++;
+
+					}
+
+					System.arraycopy(positions, i, positions, i+1, dealt-i);
+					positions[i] = position;
+					dealt++;
+
+					// Every position is mapped to a value in [1, cards], cardSets positions per value
+					if(seat<players)
+						hand[seat] = position%cards+1;
+					else
+						deckCard = position%cards+1;
+
+				}
+
+				decide(0);
+
+			}
+
+		}
+
+		// seat's turn; players who were asked ignore their threshold
+		private void decide(int seat) {
+
+			if(seat==players) {
+
+				add(winner(), exact ? weight*deck : weight);
+				return;
+
+			}
+
+			if(state[seat]==REFUSED) {
+
+				decide(seat+1);
+
+			} else if(state[seat]==RECEIVED) {
+
+				// The player before holds the card this seat gave away
+				if(hand[seat-1]+tie>hand[seat])
+					act(seat);
+				else
+					decide(seat+1);
+
+			} else {
+
+				// Acts for thresholds >= the card and stands below it; seat 0's card is rank, which is slab 1
+				int offset = (seat==0 ? 1 : hand[seat])*strides[seat]*seats;
+				base += offset;
+				act(seat);
+				base -= offset;
+				offsets[bounded++] = offset;
+				decide(seat+1);
+				bounded--;
+
+			}
+
+		}
+
+		private void act(int seat) {
+
+			if(seat==players-1) {
+
+				draw();
+				return;
+
+			}
+
+			int next = seat+1;
+
+			if(rules.blocks(hand[next])) {
+
+				state[next] = REFUSED;
+				decide(next);
+				state[next] = FREE;
+				return;
+
+			}
+
+			int card = hand[seat];
+			hand[seat] = hand[next];
+			hand[next] = card;
+			state[next] = RECEIVED;
+			decide(next);
+			state[next] = FREE;
+			hand[next] = hand[seat];
+			hand[seat] = card;
+
+		}
+
+		// The dealer swaps with the deck card unless it blocks
+		private void draw() {
+
+			final int dealer = players-1;
+			final int own = hand[dealer];
+
+			if(!exact) {
+
+				if(!rules.blocks(deckCard))
+					hand[dealer] = deckCard;
+
+				add(winner(), weight);
+				hand[dealer] = own;
+				return;
+
+			}
+
+			// Best hand among the other seats, then the deck positions that let the dealer beat it
+			int best = 0;
+
+			for(int seat = 1; seat<dealer; seat++)
+				if(tie==1 ? hand[seat]>hand[best] : hand[seat]>=hand[best])
+					best = seat;
+
+			int lowest = hand[best]+tie; // Lowest rank the dealer wins with
+			long dealerWins = 0L;
+
+			if(lowest<=cards) {
+
+				dealerWins = (long)cardSets*(cards-lowest+1);
+
+				for(int seat = 0; seat<players; seat++)
+					if(hand[seat]>=lowest)
+						dealerWins--;
+
+			}
+
+			int block = rules.getBlockRank();
+
+			// Drawing the blocking rank leaves the dealer with their own card
+			if(block!=0) {
+
+				long blocked = cardSets-used[block];
+
+				if(block>=lowest)
+					dealerWins -= blocked;
+
+				if(own>=lowest)
+					dealerWins += blocked;
+
+			}
+
+			add(best, weight*(deck-dealerWins));
+
+		}
+
+		private int winner() {
+
+			int best = 0;
+
+			for(int seat = 1; seat<players; seat++)
+				if(tie==1 ? hand[seat]>hand[best] : hand[seat]>=hand[best])
+					best = seat;
+
+			return best;
+
+		}
+
+		// Adds value to seat's wins over the box through its corners, built by doubling; the dealer's wins aren't stored
+		private void add(int seat, long value) {
+
+			if(seat==seats || value==0)
+				return;
+
+			int count = 1;
+			corners[0] = base+seat;
+			values[0] = value;
+
+			for(int i = 0; i<bounded; i++) {
+
+				for(int j = 0; j<count; j++) {
+
+					corners[count+j] = corners[j]+offsets[i];
+					values[count+j] = -values[j];
+
+				}
+
+				count <<= 1;
+
+			}
+
+			for(int j = 0; j<count; j++)
+				difference[corners[j]] += values[j];
+
+		}
+
+	}
+
+}
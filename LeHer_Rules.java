@@ -0,0 +1,247 @@
+import java.math.BigInteger;
+
+/*
+ * LeHer_Rules: One rule set of Le Her, shared by the simulation kernels and an exact enumerator.
+ * A rule set is a blocking rank and who wins ties. The standard game blocks with the highest rank, cards, and gives ties to
+ * the dealer, P2; the house variants have no blocking card, a lower blocking rank, or ties going to P1.
+ *
+ * The blocking card works the same way wherever it turns up:
+ *	P1 asks to swap and P2 holds it: the swap is refused and both keep their cards
+ *	P2 wants the deck card and it's the blocking card: P2 has to keep the card they hold
+ *
+ * Whoever ends up with the higher card wins, and a tie goes to the player the rule set names.
+ * A rule set is compiled into a table of which ranks block and an offset that turns every comparison into one integer compare,
+ * so each of the three outcomes below is a few loads and compares; swapWins() and P2SwapWins() also pick between two
+ * compares on whether a card blocks, which is a conditional that the JIT may or may not turn into a branch.
+ */
+
+public class LeHer_Rules {
+
+	private final int cards;
+	private final int blockRank; // 0 if nothing blocks
+	private final boolean tiesToP1;
+	private final boolean[] blocks; // blocks[rank] is true for the blocking rank only
+	private final int tie; // 1 if ties go to P1, so that x beats y exactly when x+tie>y
+
+	public LeHer_Rules(int cards, int blockRank, boolean tiesToP1) {
+
+		if(cards<1 || blockRank<0 || blockRank>cards)
+			throw new IllegalArgumentException("Invalid rule set");
+
+		this.cards = cards;
+		this.blockRank = blockRank;
+		this.tiesToP1 = tiesToP1;
+		blocks = new boolean[cards+1];
+		blocks[blockRank] = blockRank!=0;
+		tie = tiesToP1 ? 1 : 0;
+
+	}
+
+	// The rules LeHer, LeHer_Simplified and LeHer_Exact solve: the highest rank blocks and ties go to the dealer
+	public static LeHer_Rules standard(int cards) {
+
+		return new LeHer_Rules(cards, cards, false);
+
+	}
+
+	public int getCards() {
+
+		return cards;
+
+	}
+
+	public int getBlockRank() {
+
+		return blockRank;
+
+	}
+
+	public boolean tiesToP1() {
+
+		return tiesToP1;
+
+	}
+
+	public boolean isStandard() {
+
+		return blockRank==cards && !tiesToP1;
+
+	}
+
+	// True if a player holding rank can refuse a swap, or stops the dealer drawing it
+	public boolean blocks(int rank) {
+
+		return blocks[rank];
+
+	}
+
+	// Returns true if P1 Wins, the rule-set version of LeHer_Simulation.P1Winner()
+	public boolean P1Wins(int P1Card, int P2Card, int deckCard, int maxValP1, int maxValP2) {
+
+		// Case 1: P1 exchanges with P2
+		if(P1Card<=maxValP1)
+			return swapWins(P1Card, P2Card, deckCard);
+
+		// Case 2: P1 Keeps P1Card, P2 Exchanges
+		if(P2Card<=maxValP2)
+			return P2SwapWins(P1Card, P2Card, deckCard);
+
+		// Case 3: Nobody swaps
+		return P2KeepWins(P1Card, P2Card);
+
+	}
+
+	/*
+	 * P1 asks to swap. Unless P2 blocks, P1 ends up with P2Card and P2 with P1Card; P2 then stands if that already wins,
+	 * and otherwise draws deckCard, unless the deck card blocks and P2 is stuck with the losing card.
+	 */
+	public boolean swapWins(int P1Card, int P2Card, int deckCard) {
+
+		return blocks[P2Card] ? P1Card+tie>P2Card : P2Card+tie>P1Card & (blocks[deckCard] | P2Card+tie>deckCard);
+
+	}
+
+	// P1 keeps and P2 draws deckCard, or keeps P2Card if the deck card blocks
+	public boolean P2SwapWins(int P1Card, int P2Card, int deckCard) {
+
+		return P1Card+tie>(blocks[deckCard] ? P2Card : deckCard);
+
+	}
+
+	// Nobody swaps
+	public boolean P2KeepWins(int P1Card, int P2Card) {
+
+		return P1Card+tie>P2Card;
+
+	}
+
+	/*
+	 * Exact matrix for this rule set, without simulating. For a fixed P1Card and P2Card every outcome only depends on whether
+	 * deckCard is the blocking rank or below some limit, so the deck positions that win are counted in O(1). Each (P1Card, P2Card)
+	 * pair then adds its three outcomes to the same three rectangles as LeHer_Simulation's SINGLE_PASS, which makes the
+	 * whole matrix O(cards^2). For the standard rules it equals LeHer_Exact.solveMatrix().
+	 */
+	public LeHer_Matrix solveMatrix(int cardSets) {
+
+		final long numCards = (long)cardSets*cards;
+
+		if(numCards<3)
+			throw new IllegalArgumentException("At least 3 cards are needed");
+
+		final BigInteger denominator = BigInteger.valueOf(numCards).multiply(BigInteger.valueOf(numCards-1)).multiply(BigInteger.valueOf(numCards-2));
+
+		// Every prefix sum below stays within four times the denominator
+		if(denominator.bitLength()>60)
+			throw new ArithmeticException("Deck too large for the exact enumerator");
+
+		final int size = cards+1;
+		final int width = cards+2;
+		LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.MATRIX, "LeHer_Rules", size);
+		final long deck = numCards-2; // Positions left for deckCard
+		long[] difference = new long[width*width];
+
+		for(int P1Card = 1; P1Card<=cards; P1Card++) {
+
+			for(int P2Card = 1; P2Card<=cards; P2Card++) {
+
+				long pairs = (long)cardSets*(cardSets-(P1Card==P2Card ? 1 : 0));
+
+				if(pairs==0)
+					continue;
+
+				long keeps = P2KeepWins(P1Card, P2Card) ? deck : 0L;
+				long P2Swaps = positions(cardSets, P1Card-1+tie, keeps!=0, P1Card, P2Card);
+				long swaps;
+
+				if(blocks[P2Card])
+					swaps = keeps;
+				else
+					swaps = P2Card+tie>P1Card ? positions(cardSets, P2Card-1+tie, true, P1Card, P2Card) : 0L;
+
+				// Case 1: rows [P1Card, cards], every column
+				addRectangle(difference, width, P1Card, cards, 0, cards, pairs*swaps);
+
+				// Case 2: rows [0, P1Card-1], columns [P2Card, cards]
+				addRectangle(difference, width, 0, P1Card-1, P2Card, cards, pairs*P2Swaps);
+
+				// Case 3: rows [0, P1Card-1], columns [0, P2Card-1]
+				addRectangle(difference, width, 0, P1Card-1, 0, P2Card-1, pairs*keeps);
+
+			}
+
+		}
+
+		LeHer_Matrix matrix = new LeHer_Matrix(size, denominator);
+
+		for(int row = 0; row<size; row++) {
+
+			for(int col = 0; col<size; col++) {
+
+				int cell = row*width+col;
+
+				if(row>0)
+					difference[cell] += difference[cell-width];
+
+				if(col>0)
+					difference[cell] += difference[cell-1];
+
+				if(row>0 && col>0)
+					difference[cell] -= difference[cell-width-1];
+
+				matrix.set(row, col, difference[cell]);
+
+			}
+
+		}
+
+		timer.matrix((long)size*size, 0L);
+		return matrix;
+
+	}
+
+	/*
+	 * Deck positions left after P1Card and P2Card are dealt whose rank is at most limit and doesn't block,
+	 * plus those of the blocking rank if withBlock.
+	 */
+	private long positions(int cardSets, int limit, boolean withBlock, int P1Card, int P2Card) {
+
+		limit = Math.min(limit, cards);
+		long ranks = limit;
+
+		if(blockRank!=0 && blockRank<=limit)
+			ranks--;
+
+		if(blockRank!=0 && withBlock)
+			ranks++;
+
+		long positions = cardSets*ranks;
+
+		if(blocks[P1Card] ? withBlock : P1Card<=limit)
+			positions--;
+
+		if(blocks[P2Card] ? withBlock : P2Card<=limit)
+			positions--;
+
+		return positions;
+
+	}
+
+	private static void addRectangle(long[] difference, int width, int fromRow, int toRow, int fromCol, int toCol, long value) {
+
+		if(value==0 || fromRow>toRow || fromCol>toCol)
+			return;
+
+		difference[fromRow*width+fromCol] += value;
+		difference[fromRow*width+toCol+1] -= value;
+		difference[(toRow+1)*width+fromCol] -= value;
+		difference[(toRow+1)*width+toCol+1] += value;
+
+	}
+
+	public String toString() {
+
+		return (blockRank==0 ? "no blocking card" : "rank " + blockRank + " blocks") + ", ties go to " + (tiesToP1 ? "P1" : "the dealer");
+
+	}
+
+}
@@ -0,0 +1,438 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.*;
+
+/*
+ * LeHer_Server: Long-running local HTTP service in front of a shared LeHer_Cache, so notebooks get warm solvers instead of
+ * starting a JVM per question.
+ *
+ *	GET /solve?cardSets=4&cards=13	exact solution through LeHer_Simplified
+ *	GET /solve?engine=simulation&cardSets=4&cards=13&runs=100000&mode=SINGLE_PASS&seed=1
+ *		optional matrix=true (with format=TSV, CSV, EXCEL or READABLE) and equilibrium=false
+ *	GET /stats	cache and queue counters
+ *
+ * A response is plain text, streamed and flushed as each part is ready: the dominant strategies as domStrat() prints them,
+ * then the matrix row by row through LeHer_Export, then the equilibrium. Requests are handled on virtual threads where the
+ * JVM has them and on a cached thread pool otherwise, so a waiting request costs no CPU.
+ *
+ * Anything not solved yet goes to a fixed pool of solver threads with a bounded queue. Identical requests in flight share
+ * one job, and a request that finds the queue full gets 503 with Retry-After instead of piling up. A solved deck is answered
+ * on the request's own thread straight from the cache; its equilibrium is solved once on the pool and kept with it.
+ *
+ * Requests beyond MAX_CARDS, MAX_CARD_SETS or MAX_DEALS get 400 before anything is queued, and matrix=true for more than
+ * MAX_MATRIX_CELLS cells gets 413, so one request can't exhaust the heap or stream gigabytes.
+ */
+
+public class LeHer_Server {
+
+	public static final int DEFAULT_PORT = 8080;
+	public static final long DEFAULT_CACHE_WEIGHT = 1L<<24; // Cells held by the cache
+	public static final int DEFAULT_QUEUE = 64;
+	public static final int DEFAULT_RUNS = 100000;
+	public static final int MAX_CARDS = 2047; // 2048^2 cells, a quarter of DEFAULT_CACHE_WEIGHT
+	public static final int MAX_CARD_SETS = 1<<16;
+	public static final long MAX_DEALS = 1L<<34; // Hands one simulation may deal over all its cells
+	public static final long MAX_MATRIX_CELLS = 1L<<20; // Cells matrix=true may stream
+
+	// One solve, the part of a request that identifies its result
+	private static final class Job {
+
+		private final boolean simulation;
+		private final int cardSets;
+		private final int cards;
+		private final int runs;
+		private final LeHer_Simulation.Mode mode;
+		private final long seed;
+
+		private Job(Map<String, String> query) {
+
+			String engine = query.getOrDefault("engine", "exact");
+
+			if(!engine.equals("exact") && !engine.equals("simulation"))
+				throw new IllegalArgumentException("engine must be exact or simulation");
+
+			simulation = engine.equals("simulation");
+			cardSets = intParameter(query, "cardSets", 4);
+			cards = intParameter(query, "cards", 13);
+			runs = simulation ? intParameter(query, "runs", DEFAULT_RUNS) : 0;
+			mode = simulation ? LeHer_Simulation.Mode.valueOf(query.getOrDefault("mode", "SINGLE_PASS")) : null;
+			seed = simulation ? Long.parseLong(query.getOrDefault("seed", "1")) : 0L;
+
+			if(cardSets<1 || cards<1 || (long)cardSets*cards<3)
+				throw new IllegalArgumentException("At least 3 cards are needed");
+
+			if(cards>MAX_CARDS || cardSets>MAX_CARD_SETS)
+				throw new IllegalArgumentException("cards must be at most " + MAX_CARDS + " and cardSets at most " + MAX_CARD_SETS);
+
+			// CLASSIC can't be seeded, so it could be neither cached nor shared
+			if(mode==LeHer_Simulation.Mode.CLASSIC || simulation && runs<1)
+				throw new IllegalArgumentException("Simulations need a seeded mode and positive runs");
+
+			// SINGLE_PASS shares its deals between all cells, the other modes deal runs hands per cell
+			if(simulation && (mode==LeHer_Simulation.Mode.SINGLE_PASS ? runs : (long)runs*(cards+1)*(cards+1))>MAX_DEALS)
+				throw new IllegalArgumentException("runs must keep the simulation within " + MAX_DEALS + " deals");
+
+		}
+
+		// The solution if the cache already holds it, null if it has to go through the solver pool
+		private Object cached(LeHer_Cache cache) {
+
+			return simulation ? cache.simulationIfPresent(cardSets, cards, runs, mode, seed) : cache.simplifiedIfPresent(cardSets, cards);
+
+		}
+
+		private Object solve(LeHer_Cache cache) {
+
+			return simulation ? cache.simulation(cardSets, cards, runs, mode, seed) : cache.simplified(cardSets, cards);
+
+		}
+
+		public boolean equals(Object other) {
+
+			if(!(other instanceof Job))
+				return false;
+
+			Job job = (Job)other;
+			return simulation==job.simulation && cardSets==job.cardSets && cards==job.cards && runs==job.runs && mode==job.mode && seed==job.seed;
+
+		}
+
+		public int hashCode() {
+
+			return Objects.hash(simulation, cardSets, cards, runs, mode, seed);
+
+		}
+
+	}
+
+	private final HttpServer server;
+	private final ExecutorService handlers;
+	private final ThreadPoolExecutor solvers;
+	private final LeHer_Cache cache;
+	private final ConcurrentHashMap<Job, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<Job, CompletableFuture<Object>>();
+	private final Map<Object, CompletableFuture<LeHer_Equilibrium>> equilibria = Collections.synchronizedMap(new WeakHashMap<Object, CompletableFuture<LeHer_Equilibrium>>()); // Dropped with the solution once the cache evicts it
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder shared = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	public static void main(String[] args) throws IOException {
+
+		int port = args.length>0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		LeHer_Server server = new LeHer_Server(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), new LeHer_Cache(DEFAULT_CACHE_WEIGHT),
+				Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE);
+		LeHer_Metrics.register();
+		server.start();
+		System.out.println("LeHer_Server listening on " + server.address());
+
+	}
+
+	// solverThreads solves run at once and at most queue more wait for a thread
+	public LeHer_Server(InetSocketAddress address, LeHer_Cache cache, int solverThreads, int queue) throws IOException {
+
+		if(solverThreads<1 || queue<1)
+			throw new IllegalArgumentException("solverThreads and queue must be positive");
+
+		this.cache = cache;
+		solvers = new ThreadPoolExecutor(solverThreads, solverThreads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queue), daemonThreads("LeHer-solver"));
+		handlers = handlerExecutor();
+		server = HttpServer.create(address, 0);
+		server.setExecutor(handlers);
+		server.createContext("/solve", this::solve);
+		server.createContext("/stats", this::stats);
+
+	}
+
+	public void start() {
+
+		server.start();
+
+	}
+
+	// Stops accepting requests and gives the ones in progress up to delaySeconds to finish
+	public void stop(int delaySeconds) {
+
+		server.stop(delaySeconds);
+		handlers.shutdownNow();
+		solvers.shutdownNow();
+
+	}
+
+	public InetSocketAddress address() {
+
+		return server.getAddress();
+
+	}
+
+	public String statsString() {
+
+		return cache.stats() + "\nRequests: " + requests.sum() + ", Shared: " + shared.sum() + ", Rejected: " + rejected.sum()
+				+ ", Solving: " + solvers.getActiveCount() + ", Queued: " + solvers.getQueue().size() + ", In Flight: " + inFlight.size() + "\n";
+
+	}
+
+	private void solve(HttpExchange exchange) throws IOException {
+
+		requests.increment();
+
+		try {
+
+			Map<String, String> query = query(exchange.getRequestURI());
+			Job job;
+			LeHer_Export.Format format;
+
+			try {
+
+				job = new Job(query);
+				format = LeHer_Export.Format.valueOf(query.getOrDefault("format", "TSV"));
+
+			} catch(IllegalArgumentException e) {
+
+				send(exchange, 400, e.getMessage());
+				return;
+
+			}
+
+			boolean matrix = Boolean.parseBoolean(query.getOrDefault("matrix", "false"));
+
+			if(matrix && (long)(job.cards+1)*(job.cards+1)>MAX_MATRIX_CELLS) {
+
+				send(exchange, 413, "matrix=true is limited to " + MAX_MATRIX_CELLS + " cells");
+				return;
+
+			}
+
+			Object solved;
+
+			try {
+
+				// One lookup, so an entry evicted after a check can't end up solved on this thread
+				solved = job.cached(cache);
+
+				if(solved==null)
+					solved = submit(job).join();
+
+			} catch(RejectedExecutionException | CompletionException e) {
+
+				Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+
+				if(cause instanceof RejectedExecutionException) {
+
+					rejected.increment();
+					exchange.getResponseHeaders().set("Retry-After", "1");
+					send(exchange, 503, "Too many solves queued, retry later");
+
+				} else {
+
+					send(exchange, cause instanceof IllegalArgumentException ? 400 : 500, String.valueOf(cause.getMessage()));
+
+				}
+
+				return;
+
+			}
+
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(200, 0); // Chunked, so each part goes out when it is flushed
+			Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), LeHer_Export.BUFFER_SIZE);
+			write(out, solved, job.cards+1, format, matrix, Boolean.parseBoolean(query.getOrDefault("equilibrium", "true")));
+			out.flush();
+
+		} finally {
+
+			exchange.close();
+
+		}
+
+	}
+
+	private void stats(HttpExchange exchange) throws IOException {
+
+		try {
+
+			send(exchange, 200, statsString());
+
+		} finally {
+
+			exchange.close();
+
+		}
+
+	}
+
+	// The job already solving job, or a new one on the solver pool; throws RejectedExecutionException if the queue is full
+	private CompletableFuture<Object> submit(Job job) {
+
+		CompletableFuture<Object> created = new CompletableFuture<Object>();
+		CompletableFuture<Object> future = inFlight.putIfAbsent(job, created);
+
+		if(future!=null) {
+
+			shared.increment();
+			return future;
+
+		}
+
+		try {
+
+			solvers.execute(() -> {
+
+				try {
+
+					created.complete(job.solve(cache));
+
+				} catch(RuntimeException | Error e) {
+
+					created.completeExceptionally(e);
+
+				} finally {
+
+					inFlight.remove(job, created);
+
+				}
+
+			});
+
+		} catch(RejectedExecutionException e) {
+
+			inFlight.remove(job, created);
+			created.completeExceptionally(e); // Requests that joined it in the meantime are turned away too
+			throw e;
+
+		}
+
+		return created;
+
+	}
+
+	// Dominant strategies, then the matrix, then the equilibrium, flushing after each
+	private void write(Writer out, Object solved, int size, LeHer_Export.Format format, boolean matrix, boolean equilibrium) throws IOException {
+
+		boolean simulation = solved instanceof LeHer_Simulation;
+		out.write(simulation ? ((LeHer_Simulation)solved).domStrat() : ((LeHer_Simplified)solved).domStrat());
+		out.flush();
+
+		if(matrix) {
+
+			int[] all = LeHer_Export.indices(size);
+			LeHer_Export.write(out, format, simulation ? ((LeHer_Simulation)solved).cells() : ((LeHer_Simplified)solved).cells(), all, all);
+			out.flush();
+
+		}
+
+		if(!equilibrium)
+			return;
+
+		try {
+
+			out.write(equilibrium(solved).join().toString());
+
+		} catch(RejectedExecutionException | CompletionException e) {
+
+			// The status line is gone by now, so the failure can only be reported in the body
+			out.write("Equilibrium not available: " + (e instanceof CompletionException ? e.getCause() : e) + "\n");
+
+		}
+
+	}
+
+	// Solved once per solution on the solver pool; a rejected solve isn't remembered, so the next request tries again
+	private CompletableFuture<LeHer_Equilibrium> equilibrium(Object solved) {
+
+		synchronized(equilibria) {
+
+			CompletableFuture<LeHer_Equilibrium> future = equilibria.get(solved);
+
+			if(future==null) {
+
+				future = CompletableFuture.supplyAsync(() -> solved instanceof LeHer_Simulation ? ((LeHer_Simulation)solved).equilibrium() : ((LeHer_Simplified)solved).equilibrium(), solvers);
+				equilibria.put(solved, future);
+
+			}
+
+			return future;
+
+		}
+
+	}
+
+	private static void send(HttpExchange exchange, int status, String text) throws IOException {
+
+		byte[] body = (text + (text.endsWith("\n") ? "" : "\n")).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+
+	}
+
+	private static Map<String, String> query(URI uri) {
+
+		HashMap<String, String> query = new HashMap<String, String>();
+
+		if(uri.getRawQuery()==null)
+			return query;
+
+		for(String pair: uri.getRawQuery().split("&")) {
+
+			int equals = pair.indexOf('=');
+
+			if(equals>0)
+				query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8), URLDecoder.decode(pair.substring(equals+1), StandardCharsets.UTF_8));
+
+		}
+
+		return query;
+
+	}
+
+	private static int intParameter(Map<String, String> query, String name, int otherwise) {
+
+		String value = query.get(name);
+
+		try {
+
+			return value==null ? otherwise : Integer.parseInt(value);
+
+		} catch(NumberFormatException e) {
+
+			throw new IllegalArgumentException(name + " must be an integer");
+
+		}
+
+	}
+
+	// One virtual thread per request on JDK 21 and later, found by reflection so that the code still builds for 17
+	private static ExecutorService handlerExecutor() {
+
+		try {
+
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+
+		} catch(ReflectiveOperationException e) {
+
+			return Executors.newCachedThreadPool(daemonThreads("LeHer-request"));
+
+		}
+
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+
+		ThreadFactory threads = Executors.defaultThreadFactory();
+
+		return runnable -> {
+
+			Thread thread = threads.newThread(runnable);
+			thread.setName(name + "-" + thread.getName());
+			thread.setDaemon(true);
+			return thread;
+
+		};
+
+	}
+
+}
@@ -5,11 +5,12 @@
 
 import java.util.*;
 import java.io.*;
+import java.math.*;
 public class LeHer_Simplified {
 
 	private int cardSets;
 	private int cards;
-	private Fraction[][] winProbability;
+	private LeHer_Matrix winProbability;
 	private ArrayList<ArrayList<Integer>> solution;
 	
 	public static void main(String[] args) {
@@ -36,363 +37,234 @@ public class LeHer_Simplified {
 
 		this.cardSets = cardSets;
 		this.cards = cards;
-		winProbability = new Fraction[cards+1][cards+1];
 		solveMatrix();
 		solution = strictlyDominantStrategy();
 
 	}
 	
-	public LeHer_Simplified() {
-		
-		this(4, 13); // Default version of the game with a standard deck
-		
-	}
-
-	// Finds P1's win probability of each individual spot in order to fill the matrix in O(n^3) (original algorithm works in O(n^4))
-	private void solveMatrix() {
-		
-		for(int row = 0; row<winProbability.length; row++)
-			for(int col = 0; col<winProbability.length; col++)
-				solveProbability(row, col);
-			
-	}
-	
-	// Finds the probability of P1 winning given the max value that P1 will keep and the max value that P2 will keep (Simplified from original O(n^2) formula to O(n)
-	private void solveProbability(int maxValP1, int maxValP2) {
-		
-		final int numCards = cardSets*cards;
-		long numerator = 0L;
-		long denominator = numCards * (numCards-1) * (numCards-2);
-
-		// When both players swap their cards (P1's Card is less than P1's max value, so P1 swaps)
-		// O(n)
-		
-		for(int P1Card = 1; P1Card<=maxValP1; P1Card++)
-			if(P1Card+1<=cards-1)
-				numerator += ((long)cardSets*cardSets)*((long)((cards-P1Card-1)*cardSets*(P1Card+cards)*0.5)+P1Card-cards+1);			
-		
-		// When P1 Swaps and P2 doesn't Swap
-		// O(n)
-		long sum = 0;
-		
-		// P1Card < P2Card
-		for(int P1Card = maxValP1+1; P1Card<=cards; P1Card++)
-			if(P1Card+1<=maxValP2)
-				sum += ((long)(maxValP2-P1Card)) * (long)(cardSets * cardSets * (P1Card-1));
-		
-		// P1Card == P2Card
-		for(int P1Card = maxValP1+1; P1Card<=cards; P1Card++)
-			if(P1Card<=maxValP2)
-				sum += ((long)(cardSets-1))*((long)(cardSets*(P1Card-1)));
-		
-		// P1Card > P2Card && P1Card!=cards
-		for(int P1Card = maxValP1+1; P1Card<=cards-1; P1Card++)
-			sum += Math.min(maxValP2, P1Card-1)*((long)cardSets*(cardSets*(P1Card-1) + cardSets - 1));
-		
-		// P1Card > P2Card && P1Card==cards
-		for(int P1Card = Math.max(cards, maxValP1+1); P1Card<=cards; P1Card++)
-			sum += Math.min(maxValP2, P1Card-1)*((long)(cardSets*(cardSets*(P1Card-1)+cardSets-2)));
-		
-		numerator += sum*cardSets;
-
-		// When neither players swap
-		// O(n)
-		sum = 0;
-		
-		for(int P1Card = maxValP1+1; P1Card <=cards; P1Card++) {
-			
-			long toAdd = P1Card-maxValP2-1;
-			
-			if(toAdd>0)
-				sum += toAdd;
-			
-		}
-		
-		numerator += sum * (long)(cardSets*cardSets*(numCards-2));
-		winProbability[maxValP1][maxValP2] = new Fraction(numerator, denominator);
-		
-	}
-	
-	// Returns strictly dominant strategies for both players (P1 strategies in ArrayList.get(0), P2 in ArrayList.get(1))
-	private ArrayList<ArrayList<Integer>> strictlyDominantStrategy() {
+	// Reads the solution from store if it was solved before, otherwise solves it and saves it there
+	public LeHer_Simplified(int cardSets, int cards, LeHer_Store store) {
 
-		ArrayList<Integer> dominantRowsP1 = new ArrayList<Integer>();
-		ArrayList<Integer> dominantRowsP2 = new ArrayList<Integer>();
+		this.cardSets = cardSets;
+		this.cards = cards;
+		LeHer_Store.Entry entry = store.load(LeHer_Store.Engine.EXACT, cardSets, cards);
 
-		for(int i = 0; i<=cards; i++) {
+		if(entry!=null) {
 
-			dominantRowsP1.add(i);
-			dominantRowsP2.add(i);
+			winProbability = entry.matrix();
+			solution = LeHer_Dominance.toLists(entry.rows(), entry.cols());
+			return;
 
 		}
 
-		return strictlyDominantStrategyHelper(dominantRowsP1, dominantRowsP2);
+		solveMatrix();
+		LeHer_Dominance dominance = new LeHer_Dominance(winProbability);
+		solution = dominance.toLists();
+		store.save(LeHer_Store.Engine.EXACT, cardSets, cards, winProbability, dominance.rows(), dominance.cols());
 
 	}
 	
-	// Recursive method that keeps narrowing down dominant strategies for each playeruntil they can't be narrowed down.
-	private ArrayList<ArrayList<Integer>> strictlyDominantStrategyHelper(ArrayList<Integer> dominantRowsP1, ArrayList<Integer> dominantColsP2) {
+	public LeHer_Simplified() {
 		
-		ArrayList<Integer> newDomRowsP1 = new ArrayList<Integer>();
+		this(4, 13); // Default version of the game with a standard deck
 		
-		for(int curRow: dominantRowsP1)
-			if(!checkRows(curRow, dominantRowsP1, dominantColsP2))
-				newDomRowsP1.add(curRow);
+	}
 
+	// Finds P1's win probability of each individual spot in order to fill the matrix in O(n^2) (original algorithm works in O(n^4))
+	void solveMatrix() {
 		
-		dominantRowsP1 = newDomRowsP1;
-		ArrayList<Integer> newDomColsP2 = new ArrayList<Integer>();	
-		
-		for(int curCol: dominantColsP2)
-			if(!checkCols(curCol, dominantRowsP1, dominantColsP2))
-				newDomColsP2.add(curCol);
-		
-		/*
-		* If dominantColsP2's size doesn't change, nothing has been narrowed down and nothing will change.
-		* This check isn't done for dominantRowsP1 because when the method is initially called it's possible
-		* that nothing will be narrowed down for dominantRowsP1, but something will be narrowed down for
-		* dominantColsP2.
-		*/
-		
-		if(newDomColsP2.size() == dominantColsP2.size()) {
-			
-			ArrayList<ArrayList<Integer>> toReturn = new ArrayList<ArrayList<Integer>>();
-			toReturn.add(new ArrayList<Integer>());
-			toReturn.add(new ArrayList<Integer>());
-			toReturn.get(0).addAll(dominantRowsP1);
-			toReturn.get(1).addAll(newDomColsP2);
-			return toReturn;
+		winProbability = new LeHer_Exact(cardSets, cards).solveMatrix();
 			
-		}
-		
-		return strictlyDominantStrategyHelper(dominantRowsP1, newDomColsP2);
-
 	}
 	
-	// Checks a row for strict dominance by any other row
-	private boolean checkRows(int curRow, ArrayList<Integer> dominantRowsP1, ArrayList<Integer> dominantColsP2) {
+	// Returns P1's exact win probability for a given max value P1 and P2 will keep, in its simplest form
+	public Fraction probability(int maxValP1, int maxValP2) {
 		
-		for(int comparingRow: dominantRowsP1)
-			if(rowDominated(curRow, comparingRow, dominantColsP2))
-				return true;
+		Fraction probability = new Fraction(winProbability.bigNumerator(maxValP1, maxValP2), winProbability.bigDenominator());
+		probability.simplify();
+		return probability;
 		
-		return false;
-	
 	}
 	
-	// Checks a col for strict dominance by any other row
-	private boolean checkCols(int curCol, ArrayList<Integer> dominantRowsP1, ArrayList<Integer> dominantColsP2) {
-		
-		for(int comparingCol: dominantColsP2)
-			if(colDominated(curCol, comparingCol, dominantRowsP1))
-				return true;
-		
-		return false;
-		
-	}
-	
-	// Returns true if the row is strictly dominated by another given row
-	private boolean rowDominated(int curRow, int comparingRow, ArrayList<Integer> dominantColsP2) {
-		
-		boolean containsLesserValue = false;
-		
-		for(int col: dominantColsP2) {
-			
-			if(winProbability[curRow][col].multiple()>winProbability[comparingRow][col].multiple())
-				return false;
-			
-			// Accounts for if all numbers are equal but curRow contains one number that is less, making it strictly dominated
-			else if(winProbability[curRow][col].multiple()!=winProbability[comparingRow][col].multiple())
-				containsLesserValue = true;
-				
-		}
-		
-		return containsLesserValue;
-		
-	}
+	// Returns strictly dominant strategies for both players (P1 strategies in ArrayList.get(0), P2 in ArrayList.get(1))
+	public ArrayList<ArrayList<Integer>> strictlyDominantStrategy() {
+
+		return new LeHer_Dominance(winProbability).toLists();
 
-	// Returns true if the col is strictly dominated by another given col
-	private boolean colDominated(int curCol, int comparingCol, ArrayList<Integer> dominantRowsP1) {
-		
-		boolean containsGreaterValue = false;
-		
-		for(int row: dominantRowsP1) {
-			
-			if(winProbability[row][curCol].multiple()<winProbability[row][comparingCol].multiple())
-				return false;
-			
-			// Accounts for if all numbers are equal but curCol contains one number that is greater, making it strictly dominated
-			else if(winProbability[row][curCol].multiple()!=winProbability[row][comparingCol].multiple())
-				containsGreaterValue = true;
-			
-		}
-		
-		return containsGreaterValue;
-		
 	}
 	
-	// Prints matrix in an easy to read manner
-	private String matrixString(ArrayList<Integer> rows, ArrayList<Integer> cols) {
+	// Prints matrix in the given format
+	private String matrixString(LeHer_Export.Format format, int[] rows, int[] cols) {
 		
-		String toReturn = "\t";
-
-		for(int i: cols)
-			toReturn += "\t" + i;
-
-		toReturn += "\tMax Value P2 Will Keep";
-		toReturn += "\n";
-		
-		for(int i = 0; i<rows.size()+2; i++)
-			toReturn += "--------";
-		
-		toReturn += "\n";
-
-		// O(n^2)
-		for(int row: rows) {
-
-			toReturn += (row) + "\t|";
-
-			for(int col: cols)
-				toReturn += "\t" + winProbability[row][col].multiple();
-
-			toReturn += "\n";
-
-		}
-		
-		return toReturn + "Max Value P1 Will Keep\n";
+		return LeHer_Export.toString(format, cells(), rows, cols);
 		
 	}
-
-	// Prints matrix in a format that can easily be imported by excel if it is saved in a text file
-	private String matrixStringExcel(ArrayList<Integer> rows, ArrayList<Integer> cols) {
 	
-		String toReturn = "";
-
-		for(int i: cols)
-			toReturn += " " + i;
-
-		toReturn += " MaxValueP2WillKeep\n";
-
-		// O(n^2)
-		for(int row: rows) {
-
-			toReturn += (row);
-
-			for(int col: cols)
-				toReturn += " " + winProbability[row][col].multiple();
-
-			toReturn += "\n";
-			
-		}
+	// Appends the value printed for a cell, also used by LeHer_Server
+	LeHer_Export.Cells cells() {
 		
-		return toReturn + "MaxValueP1WillKeep\n";
+		return winProbability;
 		
 	}
 	
 	// Returns strategies that aren't strictly dominated
 	public String domStrat() {
 		
-		String toReturn = ("P1 Dominant Strategies: ");
+		StringBuilder toReturn = new StringBuilder("P1 Dominant Strategies: ");
 		
 		for(int P1DominantStrategy: solution.get(0))
-			toReturn += (" " + (P1DominantStrategy));
+			toReturn.append(' ').append(P1DominantStrategy);
 		
-		toReturn += "\nP2 Dominant Strategies: ";
+		toReturn.append("\nP2 Dominant Strategies: ");
 		
 		for(int P2DominantStrategy: solution.get(1))
-			toReturn += " " + (P2DominantStrategy);
+			toReturn.append(' ').append(P2DominantStrategy);
 			
-		return toReturn + "\n";
+		return toReturn.append('\n').toString();
 		
 	}
 	
-	// Returns ArrayList with all indices of an array of a certain size
-	private ArrayList<Integer> getIndices(int size){
+	// Returns the zero-sum equilibrium (game value and optimal mixes) of the matrix left after removing dominated strategies
+	public LeHer_Equilibrium equilibrium() {
 		
-		ArrayList<Integer> toReturn = new ArrayList<Integer>();
-		
-		for(int i = 0; i<size; i++)
-			toReturn.add(i);
-		
-		return toReturn;
+		return LeHer_Equilibrium.solve(winProbability, solution.get(0), solution.get(1));
 		
 	}
 	
 	// Prints full matrix in easy to read format
 	public String fullMatrix() {
 		
-		return matrixString(getIndices(winProbability.length), getIndices(winProbability[0].length));
+		return matrixString(LeHer_Export.Format.READABLE, LeHer_Export.indices(winProbability.size()), LeHer_Export.indices(winProbability.size()));
 		
 	}
 	
 	// Prints full matrix in format easy to import by excel in .txt format
 	public String fullMatrixExcel() {
 		
-		return matrixStringExcel(getIndices(winProbability.length), getIndices(winProbability[0].length));
+		return matrixString(LeHer_Export.Format.EXCEL, LeHer_Export.indices(winProbability.size()), LeHer_Export.indices(winProbability.size()));
 		
 	}
 	
 	// Prints dominant matrix in easy to read format
 	public String domMatrix() {
 		
-		return matrixString(solution.get(0), solution.get(1));
+		return matrixString(LeHer_Export.Format.READABLE, LeHer_Export.toArray(solution.get(0)), LeHer_Export.toArray(solution.get(1)));
 		
 	}
 	
 	// Prints dominant matrix in format easy to import by excel in .txt format
 	public String domMatrixExcel() {
 		
-		return matrixStringExcel(solution.get(0), solution.get(1));
+		return matrixString(LeHer_Export.Format.EXCEL, LeHer_Export.toArray(solution.get(0)), LeHer_Export.toArray(solution.get(1)));
 		
 	}
 	
 	public String toString() {
 		
-		return fullMatrixExcel() + "\n\n" + domMatrixExcel() + "\n\n" + fullMatrix() + "\n\n" + domMatrix() + "\n\n" + domStrat();
+		StringWriter out = new StringWriter();
+		
+		try {
+			
+			write(out);
+			
+		} catch(IOException e) {
+			
+			throw new UncheckedIOException(e); // StringWriter never throws
+			
+		}
+		
+		return out.toString();
 		
 	}
 	
 	public void print() {
 		
-		System.out.print(this.toString());
+		try {
+			
+			Writer out = new BufferedWriter(new OutputStreamWriter(System.out), LeHer_Export.BUFFER_SIZE);
+			write(out);
+			out.flush();
+			
+		} catch(IOException e) {
+			
+			System.out.println("Print Error");
+			
+		}
+		
+	}
+	
+	// Streams everything toString() returns to out
+	private void write(Writer out) throws IOException {
+		
+		int[] all = LeHer_Export.indices(winProbability.size());
+		int[] domRows = LeHer_Export.toArray(solution.get(0));
+		int[] domCols = LeHer_Export.toArray(solution.get(1));
+		LeHer_Export.write(out, LeHer_Export.Format.EXCEL, cells(), all, all);
+		out.write("\n\n");
+		LeHer_Export.write(out, LeHer_Export.Format.EXCEL, cells(), domRows, domCols);
+		out.write("\n\n");
+		LeHer_Export.write(out, LeHer_Export.Format.READABLE, cells(), all, all);
+		out.write("\n\n");
+		LeHer_Export.write(out, LeHer_Export.Format.READABLE, cells(), domRows, domCols);
+		out.write("\n\n");
+		out.write(domStrat());
 		
 	}
 
 	public void exportExcel() {
 		
-		export("LeHerMatrix_" + cards + "cards" + cardSets + "cardSets.txt" , fullMatrixExcel() + "\n\n" + domMatrixExcel());
+		try(Writer out = LeHer_Export.open("LeHerMatrix_" + cards + "cards" + cardSets + "cardSets.txt")) {
+			
+			int[] all = LeHer_Export.indices(winProbability.size());
+			LeHer_Export.write(out, LeHer_Export.Format.EXCEL, cells(), all, all);
+			out.write("\n\n");
+			LeHer_Export.write(out, LeHer_Export.Format.EXCEL, cells(), LeHer_Export.toArray(solution.get(0)), LeHer_Export.toArray(solution.get(1)));
+			
+		} catch(IOException e) {
+			
+			System.out.println("File Error, file has not been generated");
+			
+		}
 		
 	}
 	
 	public void exportAll() {
 		
-		export("LeHerMatrixReadable_" + cards + "cards" + cardSets + "cardSets.txt" , toString());
+		try(Writer out = LeHer_Export.open("LeHerMatrixReadable_" + cards + "cards" + cardSets + "cardSets.txt")) {
+			
+			write(out);
+			
+		} catch(IOException e) {
+			
+			System.out.println("File Error, file has not been generated");
+			
+		}
 		
 	}
 	
-	private void export(String fname, String toExport) {
-
-		FileWriter fileOut = null;
+	// Writes the full matrix to 'LeHerMatrix_*' and the dominant matrix to 'LeHerDomMatrix_*' in one pass over the matrix
+	public void export(LeHer_Export.Format format) {
 		
-		try {
+		String suffix = "_" + cards + "cards" + cardSets + "cardSets" + format.extension();
+		
+		try(Writer full = LeHer_Export.open("LeHerMatrix" + suffix); Writer dominant = LeHer_Export.open("LeHerDomMatrix" + suffix)) {
 			
-			fileOut = new FileWriter(new File(fname));
-			fileOut.write(toExport);
-			fileOut.close();
+			LeHer_Export.write(full, dominant, format, cells(), winProbability.size(), LeHer_Export.toArray(solution.get(0)), LeHer_Export.toArray(solution.get(1)));
+			
+		} catch(IOException e) {
 			
-		} catch (IOException e) {
-
 			System.out.println("File Error, file has not been generated");
 			
 		}
 		
-		
 	}
 	
 	class Fraction {
 		
 		private long num;
 		private long den;
+		private BigInteger bigNum; // Only set, along with bigDen, when the fraction doesn't fit in longs
+		private BigInteger bigDen;
 		
 		public Fraction(long numerator, long denominator) {
 			
@@ -401,6 +273,24 @@ public class LeHer_Simplified {
 			
 		}
 		
+		public Fraction(BigInteger numerator, BigInteger denominator) {
+			
+			if(numerator.bitLength()<Long.SIZE && denominator.bitLength()<Long.SIZE) {
+				
+				num = numerator.longValue();
+				den = denominator.longValue();
+				
+			}
+			
+			else {
+				
+				bigNum = numerator;
+				bigDen = denominator;
+				
+			}
+			
+		}
+		
 		public Fraction() {
 		
 			this(0L, 1L);
@@ -410,6 +300,24 @@ public class LeHer_Simplified {
 		// Brings fraction down to its most simple form
 		public void simplify() {
 			
+			if(bigNum!=null) {
+				
+				if(bigDen.signum()<0) {
+					
+					bigNum = bigNum.negate();
+					bigDen = bigDen.negate();
+					
+				}
+				
+				BigInteger gcf = bigNum.gcd(bigDen);
+				
+				if(gcf.signum()!=0)
+					set(bigNum.divide(gcf), bigDen.divide(gcf));
+				
+				return;
+				
+			}
+			
 			if(den<0) {
 				
 				num*=-1;
@@ -418,53 +326,146 @@ public class LeHer_Simplified {
 			}
 			
 			long gcf = gcf();
+			num /= gcf;
+			den /= gcf;
+			
+		}
+		
+		// Finds gcf of numerator and denominator with the binary GCD algorithm, O(log(max(|num|, |den|)))
+		private long gcf() {
 			
-			// Keeps on dividing the numerator and denominator by GCF until the GCF is 1
-			while(gcf!=1) {
+			long a = Math.abs(num);
+			long b = Math.abs(den);
+			
+			if(a==0 || b==0)
+				return Math.max(1, a|b);
+			
+			int shift = Long.numberOfTrailingZeros(a|b);
+			a >>= Long.numberOfTrailingZeros(a);
+			
+			// a stays odd, b has its factors of two removed every pass and shrinks by a
+			do {
 				
-				num /= gcf;
-				den /= gcf;
-				gcf = gcf();
+				b >>= Long.numberOfTrailingZeros(b);
 				
-			}
+				if(a>b) {
+					
+					long temp = a;
+					a = b;
+					b = temp;
+					
+				}
+				
+				b -= a;
+				
+			} while(b!=0);
+			
+			return a<<shift;
 			
 		}
 		
-		// Finds gcf of numerator and denominator
-		private long gcf() {
+		// Moves back to longs when a BigInteger fraction becomes small enough
+		private void set(BigInteger numerator, BigInteger denominator) {
+			
+			Fraction fraction = new Fraction(numerator, denominator);
+			num = fraction.num;
+			den = fraction.den;
+			bigNum = fraction.bigNum;
+			bigDen = fraction.bigDen;
+			
+		}
+		
+		private BigInteger toBigNum() {
 			
-			long minValue = Math.min(Math.abs(num), Math.abs(den));
+			return bigNum!=null ? bigNum : BigInteger.valueOf(num);
 			
-			for(long i = minValue; i>1; i--)
-				if(num%i==0 && den%i==0)
-					return i;
+		}
+		
+		private BigInteger toBigDen() {
 			
-			return 1;
+			return bigDen!=null ? bigDen : BigInteger.valueOf(den);
 			
 		}
 		
 		// Returns the fraction in decimal/double form.
 		public double toDecimal() {
 			
+			if(bigNum!=null)
+				return new BigDecimal(bigNum).divide(new BigDecimal(bigDen), MathContext.DECIMAL64).doubleValue();
+			
 			return ((double)num)/den;
 			
 		}
 		
+		// Exact comparison; fractions with the same denominator (every cell of the matrix) only compare numerators
+		public int compareTo(Fraction other) {
+			
+			if(bigNum==null && other.bigNum==null) {
+				
+				if(den==other.den)
+					return Long.compare(num, other.num);
+				
+				try {
+					
+					return Long.compare(Math.multiplyExact(num, other.den), Math.multiplyExact(other.num, den));
+					
+				} catch(ArithmeticException e) {
+					
+					// Falls through to BigInteger
+					
+				}
+				
+			}
+			
+			return toBigNum().multiply(other.toBigDen()).compareTo(other.toBigNum().multiply(toBigDen()));
+			
+		}
+		
 		// Returns fraction multiplied by a multiple of the denominator of every value in the matrix. Then does 2(num*multiple) - multiple 
+		// Throws ArithmeticException if the result doesn't fit in a long, use bigMultiple() then
 		public long multiple() {
 			
-			long numCards = cardSets*cards;
-			long multiple = (numCards)*(numCards-1)*(numCards-2);
-			multiple /= Math.pow(2, 3);
-			long toReturn = ((long)(num * (((double)multiple)/den)));
-			return toReturn*2-multiple;
+			if(bigNum==null) {
+				
+				long numCards = (long)cardSets*cards;
+				long multiple = Math.multiplyExact(Math.multiplyExact(numCards, numCards-1), numCards-2) / 8;
+				long toReturn = Math.multiplyExact(num, multiple) / den;
+				return Math.subtractExact(Math.multiplyExact(toReturn, 2), multiple);
+				
+			}
+			
+			return bigMultiple().longValueExact();
+			
+		}
+		
+		// multiple() computed with BigInteger
+		public BigInteger bigMultiple() {
+			
+			BigInteger numCards = BigInteger.valueOf((long)cardSets*cards);
+			BigInteger multiple = numCards.multiply(numCards.subtract(BigInteger.ONE)).multiply(numCards.subtract(BigInteger.TWO)).shiftRight(3);
+			return toBigNum().multiply(multiple).divide(toBigDen()).shiftLeft(1).subtract(multiple);
+			
+		}
+		
+		// multiple() as text, going through BigInteger only when the long version would overflow
+		public String multipleString() {
+			
+			try {
+				
+				return Long.toString(multiple());
+				
+			} catch(ArithmeticException e) {
+				
+				return bigMultiple().toString();
+				
+			}
 			
 		}
 		
 		// Returns string fraction in typical fraction format
 		public String toString() {
 			
-			return num + "/" + den;
+			return bigNum!=null ? bigNum + "/" + bigDen : num + "/" + den;
 			
 		}
 		
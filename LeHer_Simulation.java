@@ -1,31 +1,466 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class LeHer_Simulation {
 
+	/*
+	 * CLASSIC fills the matrix one cell after another with Math.random().
+	 * PARALLEL splits the cells across a ForkJoinPool, and every cell draws from its own SplittableRandom
+	 * split off a master seed in cell order, so results only depend on the seed and never on the thread count.
+	 * SINGLE_PASS deals runs hands once for the whole matrix and adds each hand's outcome to every cell at once,
+	 * so every cell is estimated from the same hands. The hands are dealt in fixed chunks with one stream each.
+	 * VECTOR splits the cells like PARALLEL but counts each one with LeHer_Kernel, which deals in SIMD lanes when the
+	 * Vector API is available and gives the same counts either way.
+	 */
+	public enum Mode { CLASSIC, PARALLEL, SINGLE_PASS, VECTOR }
+	
+	/*
+	 * How a PARALLEL cell turns its runs deals into an estimate; the other modes are always PLAIN.
+	 * PLAIN counts P1Winner() over uniform deals.
+	 * STRATIFIED gives every P1Card value its exact 1/cards share of the deals and only draws P2Card and deckCard,
+	 * which removes the variance that comes from P1Card.
+	 * ANTITHETIC plays every deal a second time with each rank r replaced by cards+1-r, which is dealt just as often,
+	 * and averages the pair. The mirror flips the ranks but not the thresholds or the blocking rank, so the pair is only
+	 * negatively correlated in some cells: over the whole matrix the variance drops by about 15%, but in a good quarter
+	 * of the cells it goes up, e.g. 4x13 cell (6, 6), where ANTITHETIC's standard error is about 10% above PLAIN's.
+	 * CONTROL_VARIATE also scores every deal in the neighbouring cell one column over, whose exact probability LeHer_Exact
+	 * knows, and corrects the estimate by how far that cell's sample mean missed; the two cells agree on most deals.
+	 * Every estimator reports its standard error through standardError().
+	 */
+	public enum Estimator { PLAIN, STRATIFIED, ANTITHETIC, CONTROL_VARIATE }
+	
+	public static final int VERSION = 1; // Bump when the dealing or P1Winner() changes, so LeHer_Store drops old results
+	
+	// Hands dealt per SINGLE_PASS chunk, fixed so that the chunking never depends on the thread count
+	private static final int CHUNK_RUNS = 1<<16;
+
 	private int cardSets;
 	private int cards;
 	private int runs;
+	private Mode mode;
+	private Estimator estimator;
+	private LeHer_Rules rules;
+	private long seed;
+	private ForkJoinPool pool;
+	private LeHer_Kernel kernel; // Used by VECTOR
 	private double[][] winProbability;
+	private double[][] standardError;
+	private LeHer_Matrix control; // Exact matrix used by CONTROL_VARIATE
+	private boolean accumulated; // Counts came from a LeHer_Accumulator, which solveMatrix() can't redeal
 	private ArrayList<ArrayList<Integer>> solution;
 	
 	public LeHer_Simulation(int cardSets, int cards, int runs) {
 
+		this(cardSets, cards, runs, Mode.CLASSIC, 0L);
+
+	}
+	
+	public LeHer_Simulation(int cardSets, int cards, int runs, long seed) {
+
+		this(cardSets, cards, runs, Mode.PARALLEL, seed);
+
+	}
+	
+	public LeHer_Simulation(int cardSets, int cards, int runs, Mode mode, long seed) {
+
+		this(cardSets, cards, runs, mode, seed, ForkJoinPool.commonPool());
+
+	}
+	
+	public LeHer_Simulation(int cardSets, int cards, int runs, Mode mode, long seed, ForkJoinPool pool) {
+
+		this(cardSets, cards, runs, mode, Estimator.PLAIN, seed, pool);
+
+	}
+	
+	// PARALLEL simulation with the given estimator
+	public LeHer_Simulation(int cardSets, int cards, int runs, Estimator estimator, long seed) {
+
+		this(cardSets, cards, runs, Mode.PARALLEL, estimator, seed, ForkJoinPool.commonPool());
+
+	}
+	
+	public LeHer_Simulation(int cardSets, int cards, int runs, Mode mode, Estimator estimator, long seed, ForkJoinPool pool) {
+
+		this(cardSets, cards, runs, mode, estimator, LeHer_Rules.standard(cards), seed, pool);
+
+	}
+	
+	// Simulates a variant of the game; LeHer_Rules.standard(cards) gives the same results as the constructors without rules
+	public LeHer_Simulation(int cardSets, int cards, int runs, Mode mode, LeHer_Rules rules, long seed) {
+
+		this(cardSets, cards, runs, mode, Estimator.PLAIN, rules, seed, ForkJoinPool.commonPool());
+
+	}
+	
+	public LeHer_Simulation(int cardSets, int cards, int runs, Mode mode, Estimator estimator, LeHer_Rules rules, long seed, ForkJoinPool pool) {
+
+		if(rules.getCards()!=cards)
+			throw new IllegalArgumentException("Rule set is for " + rules.getCards() + " cards");
+
+		if(estimator!=Estimator.PLAIN && mode!=Mode.PARALLEL)
+			throw new IllegalArgumentException(estimator + " needs Mode.PARALLEL");
+
+		// Every stratum needs two deals to estimate its variance, every other estimator two samples
+		if(estimator==Estimator.STRATIFIED ? runs<2*cards : estimator!=Estimator.PLAIN && runs<4)
+			throw new IllegalArgumentException("Too few runs for " + estimator);
+
 		this.cardSets = cardSets;
 		this.cards = cards;
 		this.runs = runs;
+		this.mode = mode;
+		this.estimator = estimator;
+		this.rules = rules;
+		this.seed = seed;
+		this.pool = pool;
 		winProbability = new double[cards+1][cards+1];
+		standardError = new double[cards+1][cards+1];
 		solveMatrix();
 		solution = strictlyDominantStrategy();
 
 	}
 	
+	/*
+	 * Reads the solution from store if this seed was simulated before, otherwise simulates it and saves it there.
+	 * The store holds P1's win count per cell over runs; CLASSIC can't be reproduced, so it is never stored.
+	 */
+	public LeHer_Simulation(int cardSets, int cards, int runs, Mode mode, long seed, LeHer_Store store) {
+
+		this.cardSets = cardSets;
+		this.cards = cards;
+		this.runs = runs;
+		this.mode = mode;
+		this.estimator = Estimator.PLAIN;
+		this.rules = LeHer_Rules.standard(cards);
+		this.seed = seed;
+		this.pool = ForkJoinPool.commonPool();
+		winProbability = new double[cards+1][cards+1];
+		standardError = new double[cards+1][cards+1];
+		LeHer_Store.Engine engine = mode==Mode.CLASSIC ? null : LeHer_Store.Engine.valueOf(mode.name());
+		LeHer_Store.Entry entry = engine==null ? null : store.load(engine, cardSets, cards, runs, seed);
+
+		if(entry!=null) {
+
+			for(int row = 0; row<=cards; row++)
+				for(int col = 0; col<=cards; col++)
+					winProbability[row][col] = ((double)entry.matrix().numerator(row, col))/runs;
+
+			plainStandardErrors();
+			solution = LeHer_Dominance.toLists(entry.rows(), entry.cols());
+			return;
+
+		}
+
+		solveMatrix();
+		LeHer_Dominance dominance = dominance();
+		solution = dominance.toLists();
+
+		if(engine==null)
+			return;
+
+		LeHer_Matrix P1Wins = new LeHer_Matrix(cards+1, runs);
+
+		// Every cell is a win count divided by runs, so rounding recovers the count exactly
+		for(int row = 0; row<=cards; row++)
+			for(int col = 0; col<=cards; col++)
+				P1Wins.set(row, col, Math.round(winProbability[row][col]*runs));
+
+		store.save(engine, cardSets, cards, runs, seed, P1Wins, dominance.rows(), dominance.cols());
+
+	}
+
+	/*
+	 * Solves the matrix counted by accumulator, which may have been resumed and merged from any number of runs.
+	 * runs is the fewest deals of any cell. The counts can't be redealt, so solveMatrix() throws; run the accumulator further
+	 * and build a new LeHer_Simulation from it instead.
+	 */
+	public LeHer_Simulation(LeHer_Accumulator accumulator) {
+
+		if(accumulator.minTrials()<2)
+			throw new IllegalArgumentException("Every cell needs at least two deals");
+
+		this.cardSets = accumulator.getCardSets();
+		this.cards = accumulator.getCards();
+		this.runs = (int)Math.min(Integer.MAX_VALUE, accumulator.minTrials());
+		this.mode = Mode.VECTOR;
+		this.estimator = Estimator.PLAIN;
+		this.rules = accumulator.getRules();
+		this.seed = accumulator.getSeed();
+		this.pool = ForkJoinPool.commonPool();
+		accumulated = true;
+		winProbability = new double[cards+1][cards+1];
+		standardError = new double[cards+1][cards+1];
+
+		for(int row = 0; row<=cards; row++)
+			for(int col = 0; col<=cards; col++) {
+
+				winProbability[row][col] = accumulator.probability(row, col);
+				standardError[row][col] = accumulator.standardError(row, col);
+
+			}
+
+		solution = strictlyDominantStrategy();
+
+	}
+
 	public void solveMatrix() {
 		
-		for(int row = 0; row<winProbability.length; row++)
-			for(int col = 0; col<winProbability.length; col++)
-				solveProbability(row, col);
+		if(accumulated)
+			throw new IllegalStateException("Solved from a LeHer_Accumulator, whose merged counts can't be redealt");
+		
+		// Solving the control matrix is a MATRIX phase of its own, so it's done before this one starts timing
+		if(estimator==Estimator.CONTROL_VARIATE && control==null)
+			control = rules.isStandard() ? new LeHer_Exact(cardSets, cards).solveMatrix() : rules.solveMatrix(cardSets);
+		
+		LeHer_Metrics.Timer timer = LeHer_Metrics.start(LeHer_Metrics.Phase.MATRIX, "LeHer_Simulation", winProbability.length);
+		
+		if(mode==Mode.PARALLEL || mode==Mode.VECTOR)
+			solveMatrixParallel();
+		
+		else if(mode==Mode.SINGLE_PASS)
+			solveMatrixSinglePass();
+		
+		else
+			for(int row = 0; row<winProbability.length; row++)
+				for(int col = 0; col<winProbability.length; col++)
+					solveProbability(row, col);
+		
+		// The other estimators fill in their own standard errors
+		if(estimator==Estimator.PLAIN)
+			plainStandardErrors();
+		
+		// SINGLE_PASS shares its deals between all cells, the other modes deal hands per cell
+		long cells = (long)winProbability.length*winProbability.length;
+		timer.matrix(cells, mode==Mode.SINGLE_PASS ? runs : cells*handsPerCell());
+	
+	}
+	
+	/*
+	 * Hands played for one cell outside SINGLE_PASS. STRATIFIED spreads runs%cards over the first strata, so its strata add
+	 * up to runs; ANTITHETIC plays runs/2 deals and their mirror images.
+	 */
+	private long handsPerCell() {
+		
+		return estimator==Estimator.ANTITHETIC ? 2L*(runs/2) : runs;
+		
+	}
+	
+	// P1's estimated win probability for a given max value P1 and P2 will keep
+	public double probability(int maxValP1, int maxValP2) {
+		
+		return winProbability[maxValP1][maxValP2];
+		
+	}
+	
+	// Standard error of probability(maxValP1, maxValP2)
+	public double standardError(int maxValP1, int maxValP2) {
+		
+		return standardError[maxValP1][maxValP2];
+		
+	}
+	
+	// A PLAIN cell is the mean of runs Bernoulli trials, so its sample variance follows from the mean alone
+	private void plainStandardErrors() {
+		
+		for(int row = 0; row<winProbability.length; row++) {
+			
+			for(int col = 0; col<winProbability.length; col++) {
+				
+				double p = winProbability[row][col];
+				standardError[row][col] = runs>1 ? Math.sqrt(p*(1-p)/(runs-1)) : Double.NaN;
+				
+			}
+			
+		}
+		
+	}
+	
+	// Hands every cell its own stream split off the master seed in row-major order, then lets the pool fill the cells in any order
+	private void solveMatrixParallel() {
+		
+		SplittableRandom master = new SplittableRandom(seed);
+		SplittableRandom[] streams = new SplittableRandom[winProbability.length*winProbability.length];
+		
+		for(int cell = 0; cell<streams.length; cell++)
+			streams[cell] = master.split();
+		
+		if(mode==Mode.VECTOR && kernel==null)
+			kernel = LeHer_Kernel.create(cardSets, cards, rules);
+		
+		pool.invoke(new CellTask(streams, 0, streams.length));
+		
+	}
+	
+	// Deals every hand once and spreads its outcome over the matrix through a 2D difference array in O(runs + cards^2)
+	private void solveMatrixSinglePass() {
+		
+		SplittableRandom master = new SplittableRandom(seed);
+		SplittableRandom[] streams = new SplittableRandom[(int)((runs+(long)CHUNK_RUNS-1)/CHUNK_RUNS)];
+		
+		for(int chunk = 0; chunk<streams.length; chunk++)
+			streams[chunk] = master.split();
+		
+		long[] P1Wins = pool.invoke(new ChunkTask(streams, 0, streams.length));
+		final int width = cards+2;
+		
+		// Prefix sums turn the difference array into the number of hands P1 won in each cell
+		for(int row = 0; row<=cards; row++) {
+			
+			for(int col = 0; col<=cards; col++) {
+				
+				int cell = row*width+col;
+				
+				if(row>0)
+					P1Wins[cell] += P1Wins[cell-width];
+				
+				if(col>0)
+					P1Wins[cell] += P1Wins[cell-1];
+				
+				if(row>0 && col>0)
+					P1Wins[cell] -= P1Wins[cell-width-1];
+				
+				winProbability[row][col] = ((double)P1Wins[cell])/runs;
+				
+			}
+			
+		}
+		
+	}
+	
+	/*
+	 * One hand decides the winner of every cell at once. If P1Card <= maxValP1, P1 exchanges and maxValP2 doesn't matter.
+	 * Otherwise the outcome only depends on whether P2Card <= maxValP2, so each hand covers the matrix with three rectangles.
+	 */
+	private void addHand(long[] difference, int[] drawnCards) {
+		
+		final int P1Card = drawnCards[0];
+		final int P2Card = drawnCards[1];
+		final int deckCard = drawnCards[2];
+		
+		// Case 1: rows [P1Card, cards], every column
+		if(rules.swapWins(P1Card, P2Card, deckCard))
+			addRectangle(difference, P1Card, cards, 0, cards);
+		
+		// Case 2: rows [0, P1Card-1], columns [P2Card, cards]
+		if(rules.P2SwapWins(P1Card, P2Card, deckCard))
+			addRectangle(difference, 0, P1Card-1, P2Card, cards);
+		
+		// Case 3: rows [0, P1Card-1], columns [0, P2Card-1]
+		if(rules.P2KeepWins(P1Card, P2Card))
+			addRectangle(difference, 0, P1Card-1, 0, P2Card-1);
+		
+	}
+	
+	// Adds one to every cell in [fromRow, toRow] x [fromCol, toCol] of a difference array that is cards+2 wide
+	private void addRectangle(long[] difference, int fromRow, int toRow, int fromCol, int toCol) {
+		
+		final int width = cards+2;
+		difference[fromRow*width+fromCol]++;
+		difference[fromRow*width+toCol+1]--;
+		difference[(toRow+1)*width+fromCol]--;
+		difference[(toRow+1)*width+toCol+1]++;
+		
+	}
+	
+	// Deals a range of chunks and returns their summed difference array
+	private class ChunkTask extends RecursiveTask<long[]> {
+		
+		private static final long serialVersionUID = 1L;
+
+		private final SplittableRandom[] streams;
+		private final int from;
+		private final int to;
+		
+		ChunkTask(SplittableRandom[] streams, int from, int to) {
+			
+			this.streams = streams;
+			this.from = from;
+			this.to = to;
+			
+		}
+		
+		protected long[] compute() {
+			
+			if(to-from<=1) {
+				
+				long[] difference = new long[(cards+2)*(cards+2)];
+				int[] drawnCards = new int[3];
+				
+				for(int chunk = from; chunk<to; chunk++) {
+					
+					int chunkRuns = (int)Math.min(CHUNK_RUNS, runs-(long)chunk*CHUNK_RUNS);
+					
+					for(int numSims = 0; numSims<chunkRuns; numSims++) {
+						
+						deal(streams[chunk], drawnCards);
+						addHand(difference, drawnCards);
+						
+					}
+					
+				}
+				
+				return difference;
+				
+			}
+			
+			int mid = (from+to)>>>1;
+			ChunkTask right = new ChunkTask(streams, mid, to);
+			right.fork();
+			long[] difference = new ChunkTask(streams, from, mid).compute();
+			long[] rightDifference = right.join();
+			
+			for(int i = 0; i<difference.length; i++)
+				difference[i] += rightDifference[i];
+			
+			return difference;
+			
+		}
+		
+	}
 	
+	// Splits a range of cells in half until it's small enough to simulate directly
+	private class CellTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+
+		private final SplittableRandom[] streams;
+		private final int from;
+		private final int to;
+		
+		CellTask(SplittableRandom[] streams, int from, int to) {
+			
+			this.streams = streams;
+			this.from = from;
+			this.to = to;
+			
+		}
+		
+		protected void compute() {
+			
+			if(to-from<=1) {
+				
+				for(int cell = from; cell<to; cell++) {
+					
+					int row = cell/winProbability.length;
+					int col = cell%winProbability.length;
+					
+					if(mode==Mode.VECTOR)
+						winProbability[row][col] = ((double)kernel.P1Wins(streams[cell], runs, row, col))/runs;
+					else
+						solveProbability(row, col, streams[cell]);
+					
+				}
+				
+				return;
+				
+			}
+			
+			int mid = (from+to)>>>1;
+			invokeAll(new CellTask(streams, from, mid), new CellTask(streams, mid, to));
+			
+		}
+		
 	}
 	
 	public void solveProbability(int maxValP1, int maxValP2) {
@@ -33,10 +468,10 @@ public class LeHer_Simulation {
 		int P1Wins = 0;
 		final int numCards = cards*cardSets;
 		
+		int[] drawnCards = new int[3]; // drawnCards[0] is P1Card, drawnCards[1] is P2Card, and drawnCards[2] is deckCard
+		
 		for(int numSims = 0; numSims<runs; numSims++) {
 			
-			int[] drawnCards = new int[3]; // drawnCards[0] is P1Card, drawnCards[1] is P2Card, and drawnCards[2] is deckCard
-			
 			// Generates each card
 			for(int i = 0; i<3; i++) {
 				
@@ -69,305 +504,365 @@ public class LeHer_Simulation {
 		
 	}
 	
-	// Returns strictly dominant strategies for both players (P1 strategies in ArrayList.get(0), P2 in ArrayList.get(1))
-	private ArrayList<ArrayList<Integer>> strictlyDominantStrategy() {
-
-		ArrayList<Integer> dominantRowsP1 = new ArrayList<Integer>();
-		ArrayList<Integer> dominantRowsP2 = new ArrayList<Integer>();
-
-		for(int i = 0; i<=cards; i++) {
-
-			dominantRowsP1.add(i);
-			dominantRowsP2.add(i);
-
-		}
-
-		return strictlyDominantStrategyHelper(dominantRowsP1, dominantRowsP2);
-
-	}
-	
-	// Recursive method that keeps narrowing down dominant strategies for each playeruntil they can't be narrowed down.
-	private ArrayList<ArrayList<Integer>> strictlyDominantStrategyHelper(ArrayList<Integer> dominantRowsP1, ArrayList<Integer> dominantColsP2) {
-		
-		ArrayList<Integer> newDomRowsP1 = new ArrayList<Integer>();
-		
-		for(int curRow: dominantRowsP1)
-			if(!checkRows(curRow, dominantRowsP1, dominantColsP2))
-				newDomRowsP1.add(curRow);
-
-		
-		dominantRowsP1 = newDomRowsP1;
-		ArrayList<Integer> newDomColsP2 = new ArrayList<Integer>();	
-		
-		for(int curCol: dominantColsP2)
-			if(!checkCols(curCol, dominantRowsP1, dominantColsP2))
-				newDomColsP2.add(curCol);
-		
-		/*
-		* If dominantColsP2's size doesn't change, nothing has been narrowed down and nothing will change.
-		* This check isn't done for dominantRowsP1 because when the method is initially called it's possible
-		* that nothing will be narrowed down for dominantRowsP1, but something will be narrowed down for
-		* dominantColsP2.
-		*/
+	// Same as solveProbability(int, int) but draws from the cell's own stream and reuses one hand for every run
+	private void solveProbability(int maxValP1, int maxValP2, SplittableRandom random) {
 		
-		if(newDomColsP2.size() == dominantColsP2.size()) {
+		if(estimator==Estimator.STRATIFIED) {
 			
-			ArrayList<ArrayList<Integer>> toReturn = new ArrayList<ArrayList<Integer>>();
-			toReturn.add(new ArrayList<Integer>());
-			toReturn.add(new ArrayList<Integer>());
-			toReturn.get(0).addAll(dominantRowsP1);
-			toReturn.get(1).addAll(newDomColsP2);
-			return toReturn;
+			solveStratified(maxValP1, maxValP2, random);
+			return;
 			
 		}
 		
-		return strictlyDominantStrategyHelper(dominantRowsP1, newDomColsP2);
-
-	}
-	
-	// Checks a row for strict dominance by any other row
-	private boolean checkRows(int curRow, ArrayList<Integer> dominantRowsP1, ArrayList<Integer> dominantColsP2) {
+		if(estimator==Estimator.ANTITHETIC) {
+			
+			solveAntithetic(maxValP1, maxValP2, random);
+			return;
+			
+		}
 		
-		for(int comparingRow: dominantRowsP1)
-			if(rowDominated(curRow, comparingRow, dominantColsP2))
-				return true;
+		if(estimator==Estimator.CONTROL_VARIATE) {
+			
+			solveControlVariate(maxValP1, maxValP2, random);
+			return;
+			
+		}
 		
-		return false;
-	
-	}
-	
-	// Checks a col for strict dominance by any other row
-	private boolean checkCols(int curCol, ArrayList<Integer> dominantRowsP1, ArrayList<Integer> dominantColsP2) {
+		int P1Wins = 0;
+		int[] drawnCards = new int[3];
 		
-		for(int comparingCol: dominantColsP2)
-			if(colDominated(curCol, comparingCol, dominantRowsP1))
-				return true;
+		for(int numSims = 0; numSims<runs; numSims++) {
+			
+			deal(random, drawnCards);
+			
+			if(P1Winner(drawnCards, maxValP1, maxValP2))
+				P1Wins++;
+			
+		}
 		
-		return false;
+		winProbability[maxValP1][maxValP2] = ((double)P1Wins)/runs;
 		
 	}
 	
-	// Returns true if the row is strictly dominated by another given row
-	private boolean rowDominated(int curRow, int comparingRow, ArrayList<Integer> dominantColsP2) {
+	// Every P1Card value gets runs/cards deals, the combined estimate weighs each stratum by its exact probability 1/cards
+	private void solveStratified(int maxValP1, int maxValP2, SplittableRandom random) {
 		
-		boolean containsLesserValue = false;
+		int[] drawnCards = new int[3];
+		double probability = 0.0;
+		double variance = 0.0;
 		
-		for(int col: dominantColsP2) {
+		for(int P1Card = 1; P1Card<=cards; P1Card++) {
 			
-			if(winProbability[curRow][col]>winProbability[comparingRow][col])
-				return false;
+			int stratumRuns = runs/cards + (P1Card<=runs%cards ? 1 : 0);
+			int P1Wins = 0;
 			
-			// Accounts for if all numbers are equal but curRow contains one number that is less, making it strictly dominated
-			else if(winProbability[curRow][col]!=winProbability[comparingRow][col])
-				containsLesserValue = true;
+			for(int numSims = 0; numSims<stratumRuns; numSims++) {
+				
+				// Position P1Card-1 holds the value P1Card, the other positions are drawn as usual
+				deal(random, P1Card-1, drawnCards);
 				
+				if(P1Winner(drawnCards, maxValP1, maxValP2))
+					P1Wins++;
+				
+			}
+			
+			double p = ((double)P1Wins)/stratumRuns;
+			probability += p/cards;
+			variance += p*(1-p)/(stratumRuns-1)/((double)cards*cards);
+			
 		}
 		
-		return containsLesserValue;
+		winProbability[maxValP1][maxValP2] = probability;
+		standardError[maxValP1][maxValP2] = Math.sqrt(variance);
 		
 	}
-
-	// Returns true if the col is strictly dominated by another given col
-	private boolean colDominated(int curCol, int comparingCol, ArrayList<Integer> dominantRowsP1) {
+	
+	// Plays runs/2 deals together with their mirror images and treats each pair's average as one sample; the standard error
+	// comes from the pairs themselves, so it shows when mirroring makes a cell worse than PLAIN
+	private void solveAntithetic(int maxValP1, int maxValP2, SplittableRandom random) {
 		
-		boolean containsGreaterValue = false;
+		int[] drawnCards = new int[3];
+		final int pairs = runs/2;
+		long[] pairWins = new long[3]; // Pairs where P1 won 0, 1 or 2 of the hands
 		
-		for(int row: dominantRowsP1) {
+		for(int pair = 0; pair<pairs; pair++) {
 			
-			if(winProbability[row][curCol]<winProbability[row][comparingCol])
-				return false;
+			deal(random, drawnCards);
+			int wins = P1Winner(drawnCards, maxValP1, maxValP2) ? 1 : 0;
 			
-			// Accounts for if all numbers are equal but curCol contains one number that is greater, making it strictly dominated
-			else if(winProbability[row][curCol]!=winProbability[row][comparingCol])
-				containsGreaterValue = true;
+			for(int i = 0; i<3; i++)
+				drawnCards[i] = cards+1-drawnCards[i];
+			
+			if(P1Winner(drawnCards, maxValP1, maxValP2))
+				wins++;
+			
+			pairWins[wins]++;
 			
 		}
 		
-		return containsGreaterValue;
+		double mean = (0.5*pairWins[1] + pairWins[2])/pairs;
+		double meanSquare = (0.25*pairWins[1] + pairWins[2])/pairs;
+		double variance = Math.max(0.0, meanSquare-mean*mean)*pairs/(pairs-1);
+		winProbability[maxValP1][maxValP2] = mean;
+		standardError[maxValP1][maxValP2] = Math.sqrt(variance/pairs);
 		
 	}
 	
-	// Returns true if P1 Wins
-	private boolean P1Winner(int[] drawnCards, int maxValP1, int maxValP2) {
+	/*
+	 * Scores every deal in this cell (X) and in the next column over (Y), whose exact mean is known, then returns
+	 * mean(X) - beta*(mean(Y) - exact) with beta = cov(X,Y)/var(Y) estimated from the same deals.
+	 * What's left of var(X) is var(X) - cov(X,Y)^2/var(Y), which is small since neighbouring cells agree on most deals.
+	 */
+	private void solveControlVariate(int maxValP1, int maxValP2, SplittableRandom random) {
 		
-		// Case 1: P1 exchanges with P2
-		if(drawnCards[0]<=maxValP1) {
-			
-			// P1 Loses if the trade results in a lesser number than P1Card or the trade is invalidated
-			if(drawnCards[0]>=drawnCards[1] || drawnCards[1]==cards)
-				return false;
+		int[] drawnCards = new int[3];
+		final int controlCol = maxValP2<cards ? maxValP2+1 : maxValP2-1;
+		long[] outcomes = new long[4]; // Indexed by 2*X + Y
+		
+		for(int numSims = 0; numSims<runs; numSims++) {
 			
-			// Or else P1 will swap (will have P2Card) and P2 will try to swap (will have deckCard)
-			return drawnCards[1]>drawnCards[2] || drawnCards[2] == cards;
+			deal(random, drawnCards);
+			int x = P1Winner(drawnCards, maxValP1, maxValP2) ? 2 : 0;
+			int y = P1Winner(drawnCards, maxValP1, controlCol) ? 1 : 0;
+			outcomes[x+y]++;
 			
 		}
 		
-		// Case 2: P1 Keeps P1Card, P2 Exchanges (gets deckCard)
-		if(drawnCards[1]<=maxValP2 && drawnCards[2]!=cards)
-			return drawnCards[0]>drawnCards[2];
-
+		double meanX = ((double)(outcomes[2]+outcomes[3]))/runs;
+		double meanY = ((double)(outcomes[1]+outcomes[3]))/runs;
+		double covariance = ((double)outcomes[3])/runs - meanX*meanY;
+		double varianceX = meanX*(1-meanX);
+		double varianceY = meanY*(1-meanY);
+		double beta = varianceY>0 ? covariance/varianceY : 0.0;
+		double residual = varianceY>0 ? varianceX - covariance*covariance/varianceY : varianceX;
+		double probability = meanX - beta*(meanY-control.toDecimal(maxValP1, controlCol));
+		winProbability[maxValP1][maxValP2] = Math.min(1.0, Math.max(0.0, probability));
+		standardError[maxValP1][maxValP2] = Math.sqrt(Math.max(0.0, residual)/(runs-2));
 		
-		// Case 3: Nobody swaps (Also covers failed Case 2 swaps)
-		return drawnCards[0]>drawnCards[1];
-			
 	}
 	
-	// Prints matrix in an easy to read manner
-	private String matrixString(ArrayList<Integer> rows, ArrayList<Integer> cols) {
+	// Draws P1Card, P2Card and deckCard without replacement into drawnCards
+	private void deal(SplittableRandom random, int[] drawnCards) {
 		
-		String toReturn = "\t";
-
-		for(int i: cols)
-			toReturn += "\t" + i;
-
-		toReturn += "\tMax Value P2 Will Keep";
-		toReturn += "\n";
+		deal(random, random.nextInt(cards*cardSets), drawnCards);
 		
-		for(int i = 0; i<rows.size()+2; i++)
-			toReturn += "--------";
-		
-		toReturn += "\n";
-
-		// O(n^2)
-		for(int row: rows) {
-
-			toReturn += (row) + "\t|";
-
-			for(int col: cols)
-				toReturn += "\t" + winProbability[row][col];
-
-			toReturn += "\n";
-
-		}
+	}
+	
+	// Same as deal(random, drawnCards) once P1Card's position in the deck is known
+	private void deal(SplittableRandom random, int first, int[] drawnCards) {
 		
-		return toReturn + "Max Value P1 Will Keep\n";
+		deal(cardSets, cards, random, first, drawnCards);
 		
 	}
 	
-	// Prints matrix in a format that can easily be imported by excel if it is saved in a text file
-	private String matrixStringExcel(ArrayList<Integer> rows, ArrayList<Integer> cols) {
+	// Static so LeHer_AdaptiveSimulation can deal exactly like this class without simulating a whole matrix
+	static void deal(int cardSets, int cards, SplittableRandom random, int first, int[] drawnCards) {
+		
+		final int numCards = cards*cardSets;
+		int second = random.nextInt(numCards-1);
+		int third = random.nextInt(numCards-2);
+		
+		if(second>=first)
+			second++;
+		
+		// Skips over the two earlier positions from lowest to highest so no position can be drawn twice
+		if(third>=Math.min(first, second))
+			third++;
+		
+		if(third>=Math.max(first, second))
+			third++;
+		
+		// Every position is mapped to a value in [1, cards], cardSets positions per value
+		drawnCards[0] = first%cards+1;
+		drawnCards[1] = second%cards+1;
+		drawnCards[2] = third%cards+1;
+		
+	}
 	
-		String toReturn = "";
-
-		for(int i: cols)
-			toReturn += " " + i;
-
-		toReturn += " MaxValueP2WillKeep\n";
+	// Returns strictly dominant strategies for both players (P1 strategies in ArrayList.get(0), P2 in ArrayList.get(1))
+	public ArrayList<ArrayList<Integer>> strictlyDominantStrategy() {
 
-		// O(n^2)
-		for(int row: rows) {
+		return dominance().toLists();
 
-			toReturn += (row);
+	}
+	
+	private LeHer_Dominance dominance() {
 
-			for(int col: cols)
-				toReturn += " " + winProbability[row][col];
+		return new LeHer_Dominance(winProbability.length, (row, col, otherRow, otherCol) -> Double.compare(winProbability[row][col], winProbability[otherRow][otherCol]));
 
-			toReturn += "\n";
+	}
+	
+	// Returns true if P1 Wins
+	private boolean P1Winner(int[] drawnCards, int maxValP1, int maxValP2) {
+		
+		return rules.P1Wins(drawnCards[0], drawnCards[1], drawnCards[2], maxValP1, maxValP2);
 			
-		}
+	}
+	
+	// Prints matrix in the given format
+	private String matrixString(LeHer_Export.Format format, int[] rows, int[] cols) {
+		
+		return LeHer_Export.toString(format, cells(), rows, cols);
+		
+	}
+	
+	// Appends the value printed for a cell, also used by LeHer_Server
+	LeHer_Export.Cells cells() {
 		
-		return toReturn + "MaxValueP1WillKeep\n";
+		return (out, row, col) -> out.append(winProbability[row][col]);
 		
 	}
 	
 	// Returns strategies that aren't strictly dominated
 	public String domStrat() {
 		
-		String toReturn = ("P1 Dominant Strategies: ");
+		StringBuilder toReturn = new StringBuilder("P1 Dominant Strategies: ");
 		
 		for(int P1DominantStrategy: solution.get(0))
-			toReturn += (" " + (P1DominantStrategy));
+			toReturn.append(' ').append(P1DominantStrategy);
 		
-		toReturn += "\nP2 Dominant Strategies: ";
+		toReturn.append("\nP2 Dominant Strategies: ");
 		
 		for(int P2DominantStrategy: solution.get(1))
-			toReturn += " " + (P2DominantStrategy);
+			toReturn.append(' ').append(P2DominantStrategy);
 			
-		return toReturn + "\n";
+		return toReturn.append('\n').toString();
 		
 	}
 	
-	// Returns ArrayList with all indices of an array of a certain size
-	private ArrayList<Integer> getIndices(int size){
+	// Returns the zero-sum equilibrium (game value and optimal mixes) of the matrix left after removing dominated strategies
+	public LeHer_Equilibrium equilibrium() {
 		
-		ArrayList<Integer> toReturn = new ArrayList<Integer>();
-		
-		for(int i = 0; i<size; i++)
-			toReturn.add(i);
-		
-		return toReturn;
+		return LeHer_Equilibrium.solve((row, col) -> winProbability[row][col], solution.get(0), solution.get(1));
 		
 	}
 	
 	// Prints full matrix in easy to read format
 	public String fullMatrix() {
 		
-		return matrixString(getIndices(winProbability.length), getIndices(winProbability[0].length));
+		return matrixString(LeHer_Export.Format.READABLE, LeHer_Export.indices(winProbability.length), LeHer_Export.indices(winProbability.length));
 		
 	}
 	
 	// Prints full matrix in format easy to import by excel in .txt format
 	public String fullMatrixExcel() {
 		
-		return matrixStringExcel(getIndices(winProbability.length), getIndices(winProbability[0].length));
+		return matrixString(LeHer_Export.Format.EXCEL, LeHer_Export.indices(winProbability.length), LeHer_Export.indices(winProbability.length));
 		
 	}
 	
 	// Prints dominant matrix in easy to read format
 	public String domMatrix() {
 		
-		return matrixString(solution.get(0), solution.get(1));
+		return matrixString(LeHer_Export.Format.READABLE, LeHer_Export.toArray(solution.get(0)), LeHer_Export.toArray(solution.get(1)));
 		
 	}
 	
 	// Prints dominant matrix in format easy to import by excel in .txt format
 	public String domMatrixExcel() {
 		
-		return matrixStringExcel(solution.get(0), solution.get(1));
+		return matrixString(LeHer_Export.Format.EXCEL, LeHer_Export.toArray(solution.get(0)), LeHer_Export.toArray(solution.get(1)));
 		
 	}
 	
 	public String toString() {
 		
-		return fullMatrixExcel() + "\n\n" + domMatrixExcel() + "\n\n" + fullMatrix() + "\n\n" + domMatrix() + "\n\n" + domStrat();
+		StringWriter out = new StringWriter();
+		
+		try {
+			
+			write(out);
+			
+		} catch(IOException e) {
+			
+			throw new UncheckedIOException(e); // StringWriter never throws
+			
+		}
+		
+		return out.toString();
 		
 	}
 	
 	public void print() {
 		
-		System.out.print(this.toString());
+		try {
+			
+			Writer out = new BufferedWriter(new OutputStreamWriter(System.out), LeHer_Export.BUFFER_SIZE);
+			write(out);
+			out.flush();
+			
+		} catch(IOException e) {
+			
+			System.out.println("Print Error");
+			
+		}
+		
+	}
+	
+	// Streams everything toString() returns to out
+	private void write(Writer out) throws IOException {
+		
+		int[] all = LeHer_Export.indices(winProbability.length);
+		int[] domRows = LeHer_Export.toArray(solution.get(0));
+		int[] domCols = LeHer_Export.toArray(solution.get(1));
+		LeHer_Export.write(out, LeHer_Export.Format.EXCEL, cells(), all, all);
+		out.write("\n\n");
+		LeHer_Export.write(out, LeHer_Export.Format.EXCEL, cells(), domRows, domCols);
+		out.write("\n\n");
+		LeHer_Export.write(out, LeHer_Export.Format.READABLE, cells(), all, all);
+		out.write("\n\n");
+		LeHer_Export.write(out, LeHer_Export.Format.READABLE, cells(), domRows, domCols);
+		out.write("\n\n");
+		out.write(domStrat());
 		
 	}
 
 	public void exportExcel() {
 		
-		export("LeHerMatrix_" + cards + "cards" + cardSets + "cardSets.txt" , fullMatrixExcel() + "\n\n" + domMatrixExcel());
+		try(Writer out = LeHer_Export.open("LeHerMatrix_" + cards + "cards" + cardSets + "cardSets.txt")) {
+			
+			int[] all = LeHer_Export.indices(winProbability.length);
+			LeHer_Export.write(out, LeHer_Export.Format.EXCEL, cells(), all, all);
+			out.write("\n\n");
+			LeHer_Export.write(out, LeHer_Export.Format.EXCEL, cells(), LeHer_Export.toArray(solution.get(0)), LeHer_Export.toArray(solution.get(1)));
+			
+		} catch(IOException e) {
+			
+			System.out.println("File Error, file has not been generated");
+			
+		}
 		
 	}
 	
 	public void exportAll() {
 		
-		export("LeHerMatrixReadable_" + cards + "cards" + cardSets + "cardSets.txt" , toString());
+		try(Writer out = LeHer_Export.open("LeHerMatrixReadable_" + cards + "cards" + cardSets + "cardSets.txt")) {
+			
+			write(out);
+			
+		} catch(IOException e) {
+			
+			System.out.println("File Error, file has not been generated");
+			
+		}
 		
 	}
 	
-	private void export(String fname, String toExport) {
-
-		FileWriter fileOut = null;
+	// Writes the full matrix to 'LeHerMatrix_*' and the dominant matrix to 'LeHerDomMatrix_*' in one pass over the matrix
+	public void export(LeHer_Export.Format format) {
 		
-		try {
+		String suffix = "_" + cards + "cards" + cardSets + "cardSets" + format.extension();
+		
+		try(Writer full = LeHer_Export.open("LeHerMatrix" + suffix); Writer dominant = LeHer_Export.open("LeHerDomMatrix" + suffix)) {
 			
-			fileOut = new FileWriter(new File(fname));
-			fileOut.write(toExport);
-			fileOut.close();
+			LeHer_Export.write(full, dominant, format, cells(), winProbability.length, LeHer_Export.toArray(solution.get(0)), LeHer_Export.toArray(solution.get(1)));
+			
+		} catch(IOException e) {
 			
-		} catch (IOException e) {
-
 			System.out.println("File Error, file has not been generated");
 			
 		}
 		
-		
 	}
 	
 }
@@ -0,0 +1,265 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/*
+ * LeHer_Store: Binary on-disk store of solved matrices, one file per (engine, cardSets, cards) and, for simulations, runs and seed.
+ * A file holds a fixed header, the numerators in row-major order, the shared denominator and the rows and columns that
+ * survived dominance elimination. Files are read back through a MappedByteBuffer, so loading is a checksum and a bulk copy
+ * with no parsing.
+ *
+ * Layout, little-endian:
+ *	0	int	MAGIC
+ *	4	int	FORMAT_VERSION
+ *	8	int	engine id
+ *	12	int	engine version
+ *	16	int	cardSets
+ *	20	int	cards
+ *	24	long	runs (0 for EXACT)
+ *	32	long	seed (0 for EXACT)
+ *	40	int	size
+ *	44	int	words per survivor set
+ *	48	long	denominator
+ *	56	int	LeHer_Dominance.VERSION
+ *	60	int	reserved
+ *	64	long[size*size]	numerators
+ *	...	long[words]	surviving rows, as BitSet.toLongArray()
+ *	...	long[words]	surviving columns
+ *	...	int	CRC32C of everything before it
+ *
+ * A file whose engine version, dominance version or checksum doesn't match is treated as missing and gets overwritten
+ * on the next save, so a result computed before a change to a formula or to dominance elimination is never served.
+ */
+
+public class LeHer_Store {
+
+	/*
+	 * Bump an engine's VERSION whenever the values it computes change; every file written by the old version is then stale.
+	 * The simulation engines only store seeded runs, since CLASSIC results can't be reproduced.
+	 */
+	public enum Engine {
+
+		EXACT(1, LeHer_Exact.VERSION), PARALLEL(2, LeHer_Simulation.VERSION), SINGLE_PASS(3, LeHer_Simulation.VERSION), VECTOR(4, LeHer_Kernel.VERSION);
+
+		private final int id;
+		private final int version;
+
+		Engine(int id, int version) {
+
+			this.id = id;
+			this.version = version;
+
+		}
+
+		public int version() {
+
+			return version;
+
+		}
+
+	}
+
+	// A stored solution: the matrix and the strategies that aren't strictly dominated
+	public static class Entry {
+
+		private final LeHer_Matrix matrix;
+		private final BitSet rows;
+		private final BitSet cols;
+
+		private Entry(LeHer_Matrix matrix, BitSet rows, BitSet cols) {
+
+			this.matrix = matrix;
+			this.rows = rows;
+			this.cols = cols;
+
+		}
+
+		public LeHer_Matrix matrix() {
+
+			return matrix;
+
+		}
+
+		public BitSet rows() {
+
+			return (BitSet)rows.clone();
+
+		}
+
+		public BitSet cols() {
+
+			return (BitSet)cols.clone();
+
+		}
+
+	}
+
+	public static final int MAGIC = 0x7248654C; // "LeHr" in file order
+	public static final int FORMAT_VERSION = 2;
+	private static final int HEADER_BYTES = 64;
+
+	private final Path directory;
+
+	public LeHer_Store(Path directory) {
+
+		this.directory = directory;
+
+	}
+
+	public LeHer_Store(String directory) {
+
+		this(Paths.get(directory));
+
+	}
+
+	// File that holds the given configuration
+	public Path path(Engine engine, int cardSets, int cards, long runs, long seed) {
+
+		String name = "LeHer_" + engine.name() + "_" + cards + "cards" + cardSets + "cardSets";
+
+		if(engine!=Engine.EXACT)
+			name += "_" + runs + "runs" + seed + "seed";
+
+		return directory.resolve(name + ".bin");
+
+	}
+
+	public Entry load(Engine engine, int cardSets, int cards) {
+
+		return load(engine, cardSets, cards, 0L, 0L);
+
+	}
+
+	// Returns the stored solution, or null if there is none or it is stale or corrupt
+	public Entry load(Engine engine, int cardSets, int cards, long runs, long seed) {
+
+		Path path = path(engine, cardSets, cards, runs, seed);
+
+		if(!Files.isRegularFile(path))
+			return null;
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			long length = channel.size();
+
+			if(length<HEADER_BYTES+Integer.BYTES || length>Integer.MAX_VALUE)
+				return null;
+
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+
+			if(buffer.getInt(0)!=MAGIC || buffer.getInt(4)!=FORMAT_VERSION || buffer.getInt(8)!=engine.id || buffer.getInt(12)!=engine.version)
+				return null;
+
+			if(buffer.getInt(16)!=cardSets || buffer.getInt(20)!=cards || buffer.getLong(24)!=runs || buffer.getLong(32)!=seed)
+				return null;
+
+			if(buffer.getInt(56)!=LeHer_Dominance.VERSION)
+				return null;
+
+			int size = buffer.getInt(40);
+			int words = buffer.getInt(44);
+
+			if(size!=cards+1 || words!=(size+63)/64 || length!=bytes(size))
+				return null;
+
+			int end = (int)length-Integer.BYTES;
+			CRC32C crc = new CRC32C();
+			crc.update(buffer.duplicate().position(0).limit(end));
+
+			if((int)crc.getValue()!=buffer.getInt(end))
+				return null;
+
+			LongBuffer longs = buffer.position(HEADER_BYTES).limit(end).slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			LeHer_Matrix matrix = new LeHer_Matrix(size, buffer.getLong(48), longs.limit(size*size));
+			long[] rows = new long[words];
+			long[] cols = new long[words];
+			longs.limit(longs.capacity()).position(size*size);
+			longs.get(rows).get(cols);
+			return new Entry(matrix, BitSet.valueOf(rows), BitSet.valueOf(cols));
+
+		} catch(IOException e) {
+
+			return null;
+
+		}
+
+	}
+
+	public boolean save(Engine engine, int cardSets, int cards, LeHer_Matrix matrix, BitSet rows, BitSet cols) {
+
+		return save(engine, cardSets, cards, 0L, 0L, matrix, rows, cols);
+
+	}
+
+	/*
+	 * Writes the solution to a temporary file next to the target and moves it into place, so a reader never maps a half
+	 * written file. Returns false without writing if the matrix needs BigInteger numerators or the file would be 2 GiB or more,
+	 * and false if the file couldn't be written.
+	 */
+	public boolean save(Engine engine, int cardSets, int cards, long runs, long seed, LeHer_Matrix matrix, BitSet rows, BitSet cols) {
+
+		final int size = matrix.size();
+		final long length = bytes(size);
+
+		if(matrix.isBig() || length>Integer.MAX_VALUE)
+			return false;
+
+		Path path = path(engine, cardSets, cards, runs, seed);
+		Path temp = null;
+
+		try {
+
+			Files.createDirectories(directory);
+			temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+				ByteBuffer buffer = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(engine.id).putInt(engine.version);
+				buffer.putInt(cardSets).putInt(cards).putLong(runs).putLong(seed);
+				buffer.putInt(size).putInt((size+63)/64).putLong(matrix.denominator()).putInt(LeHer_Dominance.VERSION).putInt(0);
+				LongBuffer longs = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+				longs.put(matrix.numerators());
+				longs.put(Arrays.copyOf(rows.toLongArray(), (size+63)/64));
+				longs.put(Arrays.copyOf(cols.toLongArray(), (size+63)/64));
+				int end = (int)length-Integer.BYTES;
+				CRC32C crc = new CRC32C();
+				crc.update(mapped.duplicate().position(0).limit(end));
+				buffer.putInt(end, (int)crc.getValue());
+				mapped.force();
+
+			}
+
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+
+		} catch(IOException e) {
+
+			// The store is only a cache, so a failed save just leaves the file missing for the next load
+			try {
+
+				if(temp!=null)
+					Files.deleteIfExists(temp);
+
+			} catch(IOException ignored) {
+
+			}
+
+			return false;
+
+		}
+
+	}
+
+	// Size of the file for a size x size matrix
+	private static long bytes(int size) {
+
+		return HEADER_BYTES + 8L*((long)size*size + 2*((size+63)/64)) + Integer.BYTES;
+
+	}
+
+}
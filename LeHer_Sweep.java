@@ -0,0 +1,219 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * LeHer_Sweep: Solves every (cardSets, cards) pair in a grid and streams each one's dominant strategies to a Sink.
+ * Configurations are sorted by their number of cells, largest first, and cut into chunks of roughly equal weight that the
+ * workers of a ForkJoinPool take in that order, so the big decks start right away and the small ones fill the gaps at the end.
+ * All configurations share one LeHer_Exact.RankSums table built for the largest cards value.
+ */
+
+public class LeHer_Sweep {
+
+	// Receives each configuration as soon as it is solved; calls are serialized, so a Sink doesn't need to be thread-safe
+	public interface Sink {
+
+		void accept(Result result);
+
+	}
+
+	public static final class Result {
+
+		private final int cardSets;
+		private final int cards;
+		private final ArrayList<ArrayList<Integer>> solution;
+		private final LeHer_Matrix matrix;
+
+		private Result(int cardSets, int cards, ArrayList<ArrayList<Integer>> solution, LeHer_Matrix matrix) {
+
+			this.cardSets = cardSets;
+			this.cards = cards;
+			this.solution = solution;
+			this.matrix = matrix;
+
+		}
+
+		public int cardSets() {
+
+			return cardSets;
+
+		}
+
+		public int cards() {
+
+			return cards;
+
+		}
+
+		// Strategies for P1 that aren't strictly dominated
+		public List<Integer> P1Strategies() {
+
+			return Collections.unmodifiableList(solution.get(0));
+
+		}
+
+		// Strategies for P2 that aren't strictly dominated
+		public List<Integer> P2Strategies() {
+
+			return Collections.unmodifiableList(solution.get(1));
+
+		}
+
+		// The full matrix, or null if the sweep was run without matrices
+		public LeHer_Matrix matrix() {
+
+			return matrix;
+
+		}
+
+		public String toString() {
+
+			return cardSets + " cardSets, " + cards + " cards: P1 " + solution.get(0) + " P2 " + solution.get(1);
+
+		}
+
+	}
+
+	private static final int CHUNKS_PER_THREAD = 16;
+
+	private final int minCardSets;
+	private final int maxCardSets;
+	private final int minCards;
+	private final int maxCards;
+
+	// Both ranges are inclusive; configurations with fewer than the 3 cards that are dealt are skipped
+	public LeHer_Sweep(int minCardSets, int maxCardSets, int minCards, int maxCards) {
+
+		if(minCardSets<1 || minCards<1 || minCardSets>maxCardSets || minCards>maxCards)
+			throw new IllegalArgumentException("Invalid ranges");
+
+		this.minCardSets = minCardSets;
+		this.maxCardSets = maxCardSets;
+		this.minCards = minCards;
+		this.maxCards = maxCards;
+
+	}
+
+	public void run(Sink sink, boolean includeMatrix) {
+
+		run(sink, includeMatrix, ForkJoinPool.commonPool());
+
+	}
+
+	// Returns once every configuration has been passed to sink; an exception thrown by a configuration or the sink ends the sweep
+	public void run(Sink sink, boolean includeMatrix, ForkJoinPool pool) {
+
+		final int numCardSets = maxCardSets-minCardSets+1;
+		final int numCards = maxCards-minCards+1;
+		long[] configs = new long[numCardSets*numCards]; // cards in the high half so sorting puts the largest matrices last
+		int i = 0;
+
+		for(int cards = minCards; cards<=maxCards; cards++)
+			for(int cardSets = minCardSets; cardSets<=maxCardSets; cardSets++)
+				if((long)cardSets*cards>=3)
+					configs[i++] = ((long)cards<<32) | cardSets;
+
+		configs = Arrays.copyOf(configs, i);
+		Arrays.sort(configs);
+		long totalWeight = 0L;
+
+		for(long config: configs)
+			totalWeight += weight(config);
+
+		// Chunks are cut from the largest configuration down, each one at least as heavy as the target or a single configuration
+		long target = Math.max(1L, totalWeight/((long)pool.getParallelism()*CHUNKS_PER_THREAD));
+		ArrayList<Integer> bounds = new ArrayList<Integer>(); // Chunk k covers [bounds.get(k+1), bounds.get(k))
+		int to = configs.length;
+		bounds.add(to);
+
+		while(to>0) {
+
+			long weight = 0L;
+
+			while(to>0 && weight<target)
+				weight += weight(configs[--to]);
+
+			bounds.add(to);
+
+		}
+
+		// Every worker takes the next chunk in order, so the heaviest chunks are always the ones started first
+		Worker[] workers = new Worker[Math.min(pool.getParallelism(), bounds.size()-1)];
+		AtomicInteger next = new AtomicInteger();
+		LeHer_Exact.RankSums sums = new LeHer_Exact.RankSums(maxCards);
+
+		for(int worker = 0; worker<workers.length; worker++)
+			workers[worker] = new Worker(configs, bounds, next, sums, sink, includeMatrix);
+
+		pool.invoke(new RecursiveAction() {
+
+			private static final long serialVersionUID = 1L;
+
+			protected void compute() {
+
+				invokeAll(workers);
+
+			}
+
+		});
+
+	}
+
+	// Cells in the matrix, which is what both the matrix and the dominance elimination scale with
+	private static long weight(long config) {
+
+		long cards = config>>>32;
+		return (cards+1)*(cards+1);
+
+	}
+
+	private static class Worker extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[] configs;
+		private final ArrayList<Integer> bounds;
+		private final AtomicInteger next;
+		private final LeHer_Exact.RankSums sums;
+		private final Sink sink;
+		private final boolean includeMatrix;
+
+		private Worker(long[] configs, ArrayList<Integer> bounds, AtomicInteger next, LeHer_Exact.RankSums sums, Sink sink, boolean includeMatrix) {
+
+			this.configs = configs;
+			this.bounds = bounds;
+			this.next = next;
+			this.sums = sums;
+			this.sink = sink;
+			this.includeMatrix = includeMatrix;
+
+		}
+
+		protected void compute() {
+
+			for(int chunk = next.getAndIncrement(); chunk<bounds.size()-1; chunk = next.getAndIncrement()) {
+
+				// Largest first within the chunk too
+				for(int i = bounds.get(chunk)-1; i>=bounds.get(chunk+1); i--) {
+
+					int cardSets = (int)configs[i];
+					int cards = (int)(configs[i]>>>32);
+					LeHer_Matrix matrix = new LeHer_Exact(cardSets, cards, sums).solveMatrix();
+					Result result = new Result(cardSets, cards, new LeHer_Dominance(matrix).toLists(), includeMatrix ? matrix : null);
+
+					synchronized(sink) {
+
+						sink.accept(result);
+
+					}
+
+				}
+
+			}
+
+		}
+
+	}
+
+}
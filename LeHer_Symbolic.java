@@ -0,0 +1,219 @@
+import java.math.BigInteger;
+import java.util.*;
+
+/*
+ * LeHer_Symbolic: Every cell of the matrix for a fixed cards value as a polynomial in cardSets.
+ * Each term of LeHer_Exact.numerator() is a product of cardSets, cardSets-1 and numCards-2 with sums that only depend on
+ * cards, so the numerator is a cubic in cardSets with no constant term, and so is the denominator cn(cn-1)(cn-2).
+ * Both are stored divided by cardSets, which leaves three integer coefficients per cell:
+ *
+ *	numerator(cardSets) = cardSets * (a2*cardSets^2 + a1*cardSets + a0)
+ *
+ * The coefficients are found once by interpolating LeHer_Exact at cardSets = 1, 2 and 3. After that any cardSets costs
+ * O(1) per cell, and the sign of the difference of two cells, a quadratic, can be decided over a whole range of cardSets.
+ */
+
+public class LeHer_Symbolic {
+
+	public static final int MIXED = 2; // Returned by compare() over a range when the order of two cells changes within it
+
+	private final int cards;
+	private final int size;
+	private final long[] coefficients; // a0, a1, a2 of every cell in row-major order
+
+	public LeHer_Symbolic(int cards) {
+
+		this.cards = cards;
+		size = cards+1;
+		coefficients = new long[3*size*size];
+		LeHer_Exact.RankSums sums = new LeHer_Exact.RankSums(cards);
+		LeHer_Exact one = new LeHer_Exact(1, cards, sums);
+		LeHer_Exact two = new LeHer_Exact(2, cards, sums);
+		LeHer_Exact three = new LeHer_Exact(3, cards, sums);
+
+		for(int row = 0; row<size; row++) {
+
+			for(int col = 0; col<size; col++) {
+
+				// Throws ArithmeticException for decks so large that the coefficients don't fit in a long
+				long g1 = one.numerator(row, col);
+				long g2 = two.numerator(row, col)/2;
+				long g3 = three.numerator(row, col)/3;
+				long a2 = Math.subtractExact(Math.addExact(g3, g1), Math.multiplyExact(2, g2))/2;
+				long a1 = Math.subtractExact(Math.subtractExact(g2, g1), Math.multiplyExact(3, a2));
+				int cell = 3*(row*size+col);
+				coefficients[cell] = Math.subtractExact(Math.subtractExact(g1, a1), a2);
+				coefficients[cell+1] = a1;
+				coefficients[cell+2] = a2;
+
+			}
+
+		}
+
+	}
+
+	public int getCards() {
+
+		return cards;
+
+	}
+
+	// Shared denominator numCards * (numCards-1) * (numCards-2) for the given cardSets
+	public long denominator(int cardSets) {
+
+		final long numCards = (long)cardSets*cards;
+		return Math.multiplyExact(Math.multiplyExact(numCards, numCards-1), numCards-2);
+
+	}
+
+	// Same value as new LeHer_Exact(cardSets, cards).numerator(maxValP1, maxValP2), in O(1)
+	public long numerator(int cardSets, int maxValP1, int maxValP2) {
+
+		return Math.multiplyExact(cardSets, evaluate(3*(maxValP1*size+maxValP2), cardSets));
+
+	}
+
+	public BigInteger bigNumerator(int cardSets, int maxValP1, int maxValP2) {
+
+		int cell = 3*(maxValP1*size+maxValP2);
+		BigInteger c = BigInteger.valueOf(cardSets);
+		BigInteger value = BigInteger.valueOf(coefficients[cell+2]).multiply(c).add(BigInteger.valueOf(coefficients[cell+1])).multiply(c).add(BigInteger.valueOf(coefficients[cell]));
+		return value.multiply(c);
+
+	}
+
+	// Builds the matrix for cardSets without running the solver, falling back to BigInteger for cells that need it
+	public LeHer_Matrix solveMatrix(int cardSets) {
+
+		final BigInteger numCards = BigInteger.valueOf((long)cardSets*cards);
+		LeHer_Matrix matrix = new LeHer_Matrix(size, numCards.multiply(numCards.subtract(BigInteger.ONE)).multiply(numCards.subtract(BigInteger.valueOf(2))));
+
+		for(int row = 0; row<size; row++) {
+
+			for(int col = 0; col<size; col++) {
+
+				try {
+
+					matrix.set(row, col, numerator(cardSets, row, col));
+
+				} catch(ArithmeticException e) {
+
+					matrix.set(row, col, bigNumerator(cardSets, row, col));
+
+				}
+
+			}
+
+		}
+
+		return matrix;
+
+	}
+
+	// Compares two cells for one cardSets without building the matrix
+	public int compare(int cardSets, int row, int col, int otherRow, int otherCol) {
+
+		long[] difference = difference(row, col, otherRow, otherCol);
+		return Long.signum(value(difference, cardSets));
+
+	}
+
+	/*
+	 * Compares two cells over every cardSets in [fromCardSets, toCardSets]: 1 if the first is larger for all of them,
+	 * -1 if it is smaller for all of them, 0 if they're always equal and MIXED otherwise.
+	 */
+	public int compare(int fromCardSets, int toCardSets, int row, int col, int otherRow, int otherCol) {
+
+		long[] range = range(difference(row, col, otherRow, otherCol), fromCardSets, toCardSets);
+
+		if(range[0]>0)
+			return 1;
+
+		if(range[1]<0)
+			return -1;
+
+		return range[0]==0 && range[1]==0 ? 0 : MIXED;
+
+	}
+
+	// Strictly dominant strategies for one cardSets, decided straight from the polynomials
+	public ArrayList<ArrayList<Integer>> strictlyDominantStrategy(int cardSets) {
+
+		return new LeHer_Dominance(size, (row, col, otherRow, otherCol) -> compare(cardSets, row, col, otherRow, otherCol)).toLists();
+
+	}
+
+	/*
+	 * Strategies that survive for every cardSets in [fromCardSets, toCardSets]. A line is only removed when it is no better
+	 * than its dominator against every survivor for the whole range and strictly worse against one of them for the whole range,
+	 * so it is dominated for each cardSets on its own. The result holds every strategy that any single cardSets in the range keeps,
+	 * and is exact whenever the range agrees on which comparisons are strict.
+	 */
+	public ArrayList<ArrayList<Integer>> strictlyDominantStrategy(int fromCardSets, int toCardSets) {
+
+		return new LeHer_Dominance(size, (row, col, otherRow, otherCol) -> {
+
+			long[] range = range(difference(row, col, otherRow, otherCol), fromCardSets, toCardSets);
+			return range[1]>0 ? 1 : range[1]<0 ? -1 : 0;
+
+		}).toLists();
+
+	}
+
+	private long[] difference(int row, int col, int otherRow, int otherCol) {
+
+		int cell = 3*(row*size+col);
+		int other = 3*(otherRow*size+otherCol);
+		long[] difference = new long[3];
+
+		for(int i = 0; i<3; i++)
+			difference[i] = Math.subtractExact(coefficients[cell+i], coefficients[other+i]);
+
+		return difference;
+
+	}
+
+	/*
+	 * Smallest and largest value of the quadratic over the integers in [from, to]. Between its ends and its vertex a
+	 * quadratic is monotonic, so only the ends and the integers on either side of the vertex need evaluating.
+	 */
+	private static long[] range(long[] quadratic, int from, int to) {
+
+		long min = Math.min(value(quadratic, from), value(quadratic, to));
+		long max = Math.max(value(quadratic, from), value(quadratic, to));
+
+		if(quadratic[2]!=0) {
+
+			long vertex = Math.floorDiv(-quadratic[1], 2*quadratic[2]);
+
+			for(long c = vertex; c<=vertex+1; c++) {
+
+				if(c>from && c<to) {
+
+					long value = value(quadratic, c);
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+
+				}
+
+			}
+
+		}
+
+		return new long[] {min, max};
+
+	}
+
+	private long evaluate(int cell, long cardSets) {
+
+		return Math.addExact(Math.multiplyExact(Math.addExact(Math.multiplyExact(coefficients[cell+2], cardSets), coefficients[cell+1]), cardSets), coefficients[cell]);
+
+	}
+
+	private static long value(long[] quadratic, long cardSets) {
+
+		return Math.addExact(Math.multiplyExact(Math.addExact(Math.multiplyExact(quadratic[2], cardSets), quadratic[1]), cardSets), quadratic[0]);
+
+	}
+
+}
@@ -0,0 +1,57 @@
+import jdk.incubator.vector.*;
+
+/*
+ * LeHer_VectorDominanceKernel: LeHer_DominanceKernel on SIMD lanes with jdk.incubator.vector, one opponent strategy per lane.
+ * Each step compares a vector of both lines lane by lane under the survivor mask, leaves the loop on the first vector with
+ * a larger survivor, and or-reduces the smaller ones on the way. The scalar kernel then rescans that vector for the first
+ * larger entry, along with the entries past the last full vector.
+ * The mask is made by comparing alive's lanes with zero. VectorMask.fromArray() on a boolean[] isn't intrinsified in JDK 17
+ * and allocated a mask on every step; comparing longs stays in registers.
+ * Needs --add-modules jdk.incubator.vector both to compile and to run; LeHer_DominanceKernel.create() only loads it when
+ * the module is there.
+ */
+
+public class LeHer_VectorDominanceKernel extends LeHer_DominanceKernel {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	public LeHer_VectorDominanceKernel() {
+
+	}
+
+	public int lanes() {
+
+		return SPECIES.length();
+
+	}
+
+	protected int range(long[] data, int line, int other, long[] alive, int from, int to) {
+
+		final int lanes = SPECIES.length();
+		boolean smaller = false;
+		int k = from;
+
+		for(; k<=to-lanes; k += lanes) {
+
+			VectorMask<Long> survivors = LongVector.fromArray(SPECIES, alive, k).compare(VectorOperators.NE, 0L);
+			LongVector a = LongVector.fromArray(SPECIES, data, line+k);
+			LongVector b = LongVector.fromArray(SPECIES, data, other+k);
+
+			if(a.compare(VectorOperators.GT, b).and(survivors).anyTrue())
+				break;
+
+			smaller |= a.compare(VectorOperators.LT, b).and(survivors).anyTrue();
+
+		}
+
+		// The vector with the first larger lane, if any, is rescanned in order with the rest
+		int result = super.range(data, line, other, alive, k, to);
+
+		if(result>=0)
+			return result;
+
+		return smaller || result==DOMINATED ? DOMINATED : EQUAL;
+
+	}
+
+}
@@ -0,0 +1,159 @@
+import java.util.SplittableRandom;
+
+import jdk.incubator.vector.*;
+
+/*
+ * LeHer_VectorKernel: LeHer_Kernel on SIMD lanes with jdk.incubator.vector, one deal per lane.
+ * Every lane runs the same generator, mapping and rules as the scalar kernel with masks in place of the conditionals.
+ * Needs --add-modules jdk.incubator.vector both to compile and to run; LeHer_Kernel.create() only loads it when the module is there.
+ *
+ * Deals go through in blocks of BLOCK, one short loop per stage with the positions in arrays in between:
+ *	draw	one loop per card, random numbers to positions
+ *	skip	moves the second and third positions past the earlier ones
+ *	count	positions to ranks, the rules, and the per-lane win counts
+ * The last runs%lanes deals, too few to fill a vector, go through the scalar kernel.
+ * C2 in JDK 17 stops inlining once a method grows past a node budget, and every Vector API call that isn't inlined boxes its
+ * vectors. One loop doing all of it blew the budget and allocated on every step; the short loops each compile whole.
+ * The gather of ranks from the rank table isn't intrinsified either, so count() takes position%cards with a fixed-point
+ * reciprocal, exact for decks up to VECTOR_MAX_CARDS.
+ */
+
+public class LeHer_VectorKernel extends LeHer_Kernel {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+	private static final IntVector ZERO = IntVector.zero(SPECIES);
+	private static final IntVector TRUE = IntVector.broadcast(SPECIES, -1);
+	private static final IntVector INDEX = IntVector.zero(SPECIES).addIndex(1);
+
+	private static final int BLOCK = 1024; // Deals per block, a multiple of every vector length
+
+	private final int reciprocal; // ceil(2^shift/cards)
+	private final int shift;
+
+	public LeHer_VectorKernel(int cardSets, int cards, LeHer_Rules rules) {
+
+		super(cardSets, cards, rules);
+
+		if(numCards>VECTOR_MAX_CARDS)
+			throw new IllegalArgumentException("Deck too large for the vector kernel");
+
+		/*
+		 * floor(position*reciprocal/2^shift) = position/cards as long as position*(reciprocal*cards-2^shift) < 2^shift,
+		 * which numCards*cards <= 2^shift makes sure of. The product stays below 2^32 for decks up to VECTOR_MAX_CARDS.
+		 */
+		shift = 64-Long.numberOfLeadingZeros((long)numCards*cards-1);
+		reciprocal = (int)(((1L<<shift)+cards-1)/cards);
+
+	}
+
+	public int lanes() {
+
+		return SPECIES.length();
+
+	}
+
+	public long P1Wins(SplittableRandom random, int runs, int maxValP1, int maxValP2) {
+
+		final int key0 = random.nextInt();
+		final int key1 = random.nextInt();
+		final int key2 = random.nextInt();
+		final int[] first = new int[BLOCK];
+		final int[] second = new int[BLOCK];
+		final int[] third = new int[BLOCK];
+		final int[] P1Wins = new int[SPECIES.length()]; // Per-lane counts; a vector carried between blocks would be boxed
+		final int whole = runs-runs%SPECIES.length(); // Deals that fill whole vectors, the scalar kernel does the rest
+
+		for(int deal = 0; deal<whole; deal += BLOCK) {
+
+			draw(first, deal, key0, numCards);
+			draw(second, deal, key1, numCards-1);
+			draw(third, deal, key2, numCards-2);
+			skip(first, second, third);
+			count(first, second, third, Math.min(whole-deal, BLOCK), maxValP1, maxValP2, P1Wins);
+
+		}
+
+		return IntVector.fromArray(SPECIES, P1Wins, 0).reduceLanes(VectorOperators.ADD)+(long)P1Wins(key0, key1, key2, whole, runs, maxValP1, maxValP2);
+
+	}
+
+	// Positions in [0, bound) for deals deal..deal+BLOCK-1 of one card
+	private static void draw(int[] positions, int deal, int key, int bound) {
+
+		for(int i = 0; i<BLOCK; i += SPECIES.length()) {
+
+			IntVector x = INDEX.add(deal+i).mul(GOLDEN).add(key);
+
+			// mix()
+			x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 16)).mul(0x7feb352d);
+			x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 15)).mul(0x846ca68b);
+			x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 16));
+
+			// bounded()
+			final IntVector high = x.lanewise(VectorOperators.LSHR, 20);
+			final IntVector low = x.lanewise(VectorOperators.LSHR, 8).and(0xFFF);
+			high.mul(bound).add(low.mul(bound).lanewise(VectorOperators.LSHR, 12)).lanewise(VectorOperators.LSHR, 12).intoArray(positions, i);
+
+		}
+
+	}
+
+	// Skips over the earlier positions from lowest to highest so no position can be drawn twice; true is -1
+	private static void skip(int[] first, int[] second, int[] third) {
+
+		for(int i = 0; i<BLOCK; i += SPECIES.length()) {
+
+			final IntVector P1 = IntVector.fromArray(SPECIES, first, i);
+			IntVector P2 = IntVector.fromArray(SPECIES, second, i);
+			IntVector deck = IntVector.fromArray(SPECIES, third, i);
+
+			P2 = P2.sub(bits(P2.compare(VectorOperators.GE, P1)));
+			deck = deck.sub(bits(deck.compare(VectorOperators.GE, P1.min(P2))));
+			deck = deck.sub(bits(deck.compare(VectorOperators.GE, P1.max(P2))));
+
+			P2.intoArray(second, i);
+			deck.intoArray(third, i);
+
+		}
+
+	}
+
+	// Adds P1's wins among the first deals of the block, a multiple of the vector length, to the per-lane counts
+	private void count(int[] first, int[] second, int[] third, int deals, int maxValP1, int maxValP2, int[] P1Wins) {
+
+		for(int i = 0; i<deals; i += SPECIES.length()) {
+
+			final IntVector P1Card = rank(IntVector.fromArray(SPECIES, first, i));
+			final IntVector P2Card = rank(IntVector.fromArray(SPECIES, second, i));
+			final IntVector deckCard = rank(IntVector.fromArray(SPECIES, third, i));
+			final IntVector P1Tie = P1Card.add(tie);
+			final IntVector P2Tie = P2Card.add(tie);
+			final VectorMask<Integer> blockDeck = deckCard.compare(VectorOperators.EQ, blockRank);
+			final IntVector keepWin = bits(P1Tie.compare(VectorOperators.GT, P2Card));
+			final IntVector swapWin = bits(P2Tie.compare(VectorOperators.GT, P1Card)).and(bits(blockDeck).or(bits(P2Tie.compare(VectorOperators.GT, deckCard))))
+					.blend(keepWin, P2Card.compare(VectorOperators.EQ, blockRank));
+			final IntVector P2SwapWin = bits(P1Tie.compare(VectorOperators.GT, deckCard.blend(P2Card, blockDeck)));
+
+			// P1 swaps up to maxValP1, otherwise P2 swaps up to maxValP2
+			final IntVector win = keepWin.blend(P2SwapWin, P2Card.compare(VectorOperators.LE, maxValP2)).blend(swapWin, P1Card.compare(VectorOperators.LE, maxValP1));
+			IntVector.fromArray(SPECIES, P1Wins, 0).sub(win).intoArray(P1Wins, 0);
+
+		}
+
+	}
+
+	// position%cards+1, the same as the scalar kernel's rank table
+	private IntVector rank(IntVector position) {
+
+		return position.sub(position.mul(reciprocal).lanewise(VectorOperators.LSHR, shift).mul(cards)).add(1);
+
+	}
+
+	// -1 where m is set, 0 elsewhere, so that masks combine with plain bitwise operations
+	private static IntVector bits(VectorMask<Integer> m) {
+
+		return ZERO.blend(TRUE, m);
+
+	}
+
+}
@@ -0,0 +1,203 @@
+import java.io.*;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
+
+import leher.benchmarks.Engine;
+
+/*
+ * LeHer_BenchmarkEngines: Adapts the engines to leher.benchmarks.Engine.
+ * JMH can't generate code for benchmarks in the default package, and classes in a named package can't refer to the
+ * default package, so the benchmarks only see the engines through this class, which they load by name.
+ */
+
+public class LeHer_BenchmarkEngines {
+
+	// engine is "LeHer", "LeHer_Simplified" or "LeHer_Simulation"; runs is only used by LeHer_Simulation
+	public static Engine create(String engine, int cardSets, int cards, int runs) {
+
+		switch(engine) {
+
+			case "LeHer":
+				return analytical(cardSets, cards);
+
+			case "LeHer_Simplified":
+				return simplified(cardSets, cards);
+
+			case "LeHer_Simulation":
+				return simulation(cardSets, cards, runs);
+
+			default:
+				throw new IllegalArgumentException("Unknown engine " + engine);
+
+		}
+
+	}
+
+	private static Engine analytical(int cardSets, int cards) {
+
+		LeHer leHer = new LeHer(cardSets, cards);
+		int[] all = LeHer_Export.indices(cards+1);
+
+		return new Engine() {
+
+			public Object solveMatrix() {
+
+				leHer.solveMatrix();
+				return leHer;
+
+			}
+
+			public Object strictlyDominantStrategy() {
+
+				return leHer.strictlyDominantStrategy();
+
+			}
+
+			public String text() {
+
+				return leHer.toString();
+
+			}
+
+			public void export(Writer out) throws IOException {
+
+				LeHer_Export.write(out, LeHer_Export.Format.EXCEL, leHer.cells(), all, all);
+
+			}
+
+		};
+
+	}
+
+	private static Engine simplified(int cardSets, int cards) {
+
+		LeHer_Simplified leHer = new LeHer_Simplified(cardSets, cards);
+		int[] all = LeHer_Export.indices(cards+1);
+
+		return new Engine() {
+
+			public Object solveMatrix() {
+
+				leHer.solveMatrix();
+				return leHer;
+
+			}
+
+			public Object strictlyDominantStrategy() {
+
+				return leHer.strictlyDominantStrategy();
+
+			}
+
+			public String text() {
+
+				return leHer.fullMatrix();
+
+			}
+
+			public void export(Writer out) throws IOException {
+
+				LeHer_Export.write(out, LeHer_Export.Format.EXCEL, leHer.cells(), all, all);
+
+			}
+
+		};
+
+	}
+
+	// Seeded SINGLE_PASS, which deals runs hands per solveMatrix() whatever the size of the matrix
+	private static Engine simulation(int cardSets, int cards, int runs) {
+
+		LeHer_Simulation leHer = new LeHer_Simulation(cardSets, cards, runs, LeHer_Simulation.Mode.SINGLE_PASS, 1L);
+		int[] all = LeHer_Export.indices(cards+1);
+
+		return new Engine() {
+
+			public Object solveMatrix() {
+
+				leHer.solveMatrix();
+				return leHer;
+
+			}
+
+			public Object strictlyDominantStrategy() {
+
+				return leHer.strictlyDominantStrategy();
+
+			}
+
+			public String text() {
+
+				return leHer.fullMatrixExcel();
+
+			}
+
+			public void export(Writer out) throws IOException {
+
+				LeHer_Export.write(out, LeHer_Export.Format.EXCEL, leHer.cells(), all, all);
+
+			}
+
+		};
+
+	}
+
+	/*
+	 * Seeded LeHer_Players simulation on a pool with one thread, so deals per second are per core. solveMatrix() deals runs
+	 * hands and also pays for allocating and summing up the tensor, which is small next to the dealing.
+	 */
+	public static Engine players(int players, int cardSets, int cards, int runs) {
+
+		ForkJoinPool pool = new ForkJoinPool(1);
+		LeHer_Rules rules = LeHer_Rules.standard(cards);
+		LeHer_Players leHer = new LeHer_Players(players, cardSets, cards, rules, runs, 1L, pool);
+
+		return new Engine() {
+
+			public Object solveMatrix() {
+
+				return new LeHer_Players(players, cardSets, cards, rules, runs, 1L, pool);
+
+			}
+
+			public Object strictlyDominantStrategy() {
+
+				return leHer.strictlyDominantStrategy();
+
+			}
+
+			public String text() {
+
+				return leHer.toString();
+
+			}
+
+			public void export(Writer out) throws IOException {
+
+				out.write(leHer.toString());
+
+			}
+
+		};
+
+	}
+
+	/*
+	 * One cell of LeHer_Kernel, kernel is "scalar" or "vector". Every call counts P1's wins over runs deals with new keys
+	 * for the middle strategies. Fails if the vector kernel is asked for but the JVM can't run it.
+	 */
+	public static LongSupplier kernel(String kernel, int cardSets, int cards, int runs) {
+
+		LeHer_Rules rules = LeHer_Rules.standard(cards);
+		LeHer_Kernel counter = kernel.equals("scalar") ? new LeHer_Kernel(cardSets, cards, rules) : LeHer_Kernel.create(cardSets, cards, rules);
+		SplittableRandom random = new SplittableRandom(1L);
+
+		if(kernel.equals("vector") && !(counter instanceof LeHer_VectorKernel))
+			throw new IllegalStateException("The vector kernel needs --add-modules jdk.incubator.vector and wide vectors");
+
+		return () -> counter.P1Wins(random, runs, cards/2, cards/2);
+
+	}
+
+}
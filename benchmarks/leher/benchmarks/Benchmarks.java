@@ -0,0 +1,36 @@
+package leher.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+/*
+ * Benchmarks: Main class of target/benchmarks.jar.
+ * With no arguments it runs every benchmark with the GC profiler, so allocation rates are reported next to the times,
+ * and writes the results to jmh-result.json to compare between releases. Arguments are passed to JMH as they are.
+ */
+
+public class Benchmarks {
+
+	public static void main(String[] args) throws Exception {
+
+		if(args.length>0) {
+
+			org.openjdk.jmh.Main.main(args);
+			return;
+
+		}
+
+		Options options = new OptionsBuilder()
+				.include("leher\\.benchmarks\\..*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("jmh-result.json")
+				.build();
+
+		new Runner(options).run();
+
+	}
+
+}
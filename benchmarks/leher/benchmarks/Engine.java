@@ -0,0 +1,67 @@
+package leher.benchmarks;
+
+import java.io.*;
+import java.util.function.LongSupplier;
+
+/*
+ * Engine: What the benchmarks measure on LeHer, LeHer_Simplified, LeHer_Simulation and LeHer_Players, and the kernels of LeHer_Kernel.
+ * The engines live in the default package, which a named package can't import, so they're reached through
+ * LeHer_BenchmarkEngines, looked up by name once per trial.
+ */
+
+public interface Engine {
+
+	// Returns what was solved, so the benchmark can hand it to JMH
+	Object solveMatrix();
+
+	Object strictlyDominantStrategy();
+
+	String text();
+
+	void export(Writer out) throws IOException;
+
+	static Engine create(String engine, int cardSets, int cards, int runs) {
+
+		try {
+
+			return (Engine)Class.forName("LeHer_BenchmarkEngines").getMethod("create", String.class, int.class, int.class, int.class).invoke(null, engine, cardSets, cards, runs);
+
+		} catch(ReflectiveOperationException e) {
+
+			throw new IllegalStateException("LeHer_BenchmarkEngines is missing from the class path", e);
+
+		}
+
+	}
+
+	// Seeded LeHer_Players simulation on a single thread
+	static Engine players(int players, int cardSets, int cards, int runs) {
+
+		try {
+
+			return (Engine)Class.forName("LeHer_BenchmarkEngines").getMethod("players", int.class, int.class, int.class, int.class).invoke(null, players, cardSets, cards, runs);
+
+		} catch(ReflectiveOperationException e) {
+
+			throw new IllegalStateException("LeHer_BenchmarkEngines is missing from the class path", e);
+
+		}
+
+	}
+
+	// One cell of LeHer_Kernel, "scalar" or "vector"
+	static LongSupplier kernel(String kernel, int cardSets, int cards, int runs) {
+
+		try {
+
+			return (LongSupplier)Class.forName("LeHer_BenchmarkEngines").getMethod("kernel", String.class, int.class, int.class, int.class).invoke(null, kernel, cardSets, cards, runs);
+
+		} catch(ReflectiveOperationException e) {
+
+			throw new IllegalStateException("LeHer_BenchmarkEngines is missing from the class path", e);
+
+		}
+
+	}
+
+}
@@ -0,0 +1,49 @@
+package leher.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/*
+ * KernelBenchmark: One cell of LeHer_Kernel on one thread, the scalar kernel against LeHer_VectorKernel.
+ * count() deals RUNS hands per call and is reported in deals per second per core.
+ */
+
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+public class KernelBenchmark {
+
+	public static final int RUNS = 1<<20;
+
+	@Param({"scalar", "vector"})
+	public String kernel;
+
+	@Param({"13", "256"})
+	public int cards;
+
+	@Param({"4"})
+	public int cardSets;
+
+	private LongSupplier cell;
+
+	@Setup(Level.Trial)
+	public void setup() {
+
+		cell = Engine.kernel(kernel, cardSets, cards, RUNS);
+
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(RUNS)
+	public long count() {
+
+		return cell.getAsLong();
+
+	}
+
+}
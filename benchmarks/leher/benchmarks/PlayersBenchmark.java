@@ -0,0 +1,57 @@
+package leher.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/*
+ * PlayersBenchmark: Seeded LeHer_Players simulation on one thread. solveMatrix() deals RUNS hands per call and is reported
+ * in deals per second per core; strictlyDominantStrategy() eliminates on the tensor simulated during setup.
+ */
+
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class PlayersBenchmark {
+
+	public static final int RUNS = 1<<20;
+
+	@Param({"3", "4", "6"})
+	public int players;
+
+	@Param({"13"})
+	public int cards;
+
+	@Param({"4"})
+	public int cardSets;
+
+	private Engine engine;
+
+	@Setup(Level.Trial)
+	public void setup() {
+
+		engine = Engine.players(players, cardSets, cards, RUNS);
+
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(RUNS)
+	public Object solveMatrix() {
+
+		return engine.solveMatrix();
+
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Object strictlyDominantStrategy() {
+
+		return engine.strictlyDominantStrategy();
+
+	}
+
+}
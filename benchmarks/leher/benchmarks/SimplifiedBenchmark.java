@@ -0,0 +1,64 @@
+package leher.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/*
+ * SimplifiedBenchmark: LeHer_Simplified, whose matrix comes from the O(1) per cell closed form in LeHer_Exact.
+ * export() streams the Excel layout to a Writer that drops it, so formatting is measured and the disk isn't.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimplifiedBenchmark {
+
+	@Param({"13", "52", "256", "1024"})
+	public int cards;
+
+	@Param({"1", "4", "8"})
+	public int cardSets;
+
+	private Engine engine;
+
+	@Setup(Level.Trial)
+	public void setup() {
+
+		engine = Engine.create("LeHer_Simplified", cardSets, cards, 0);
+
+	}
+
+	@Benchmark
+	public Object solveMatrix() {
+
+		return engine.solveMatrix();
+
+	}
+
+	@Benchmark
+	public Object strictlyDominantStrategy() {
+
+		return engine.strictlyDominantStrategy();
+
+	}
+
+	@Benchmark
+	public String text() {
+
+		return engine.text();
+
+	}
+
+	@Benchmark
+	public void export() throws IOException {
+
+		engine.export(Writer.nullWriter());
+
+	}
+
+}
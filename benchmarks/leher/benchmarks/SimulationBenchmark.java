@@ -0,0 +1,73 @@
+package leher.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/*
+ * SimulationBenchmark: Seeded SINGLE_PASS LeHer_Simulation. solveMatrix() deals RUNS hands per call and is reported
+ * in deals per second; the other benchmarks work on the matrix simulated during setup.
+ */
+
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulationBenchmark {
+
+	public static final int RUNS = 1<<20;
+
+	@Param({"13", "52", "256", "1024"})
+	public int cards;
+
+	@Param({"1", "4", "8"})
+	public int cardSets;
+
+	private Engine engine;
+
+	@Setup(Level.Trial)
+	public void setup() {
+
+		engine = Engine.create("LeHer_Simulation", cardSets, cards, RUNS);
+
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(RUNS)
+	public Object solveMatrix() {
+
+		return engine.solveMatrix();
+
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Object strictlyDominantStrategy() {
+
+		return engine.strictlyDominantStrategy();
+
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public String text() {
+
+		return engine.text();
+
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void export() throws IOException {
+
+		engine.export(Writer.nullWriter());
+
+	}
+
+}